@@ -0,0 +1,251 @@
+package benchmark;
+
+import model.ChessModel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import view.ChessGUIView.compoundKey;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class holds the JMH benchmarks for the ChessModel hot paths: making moves,
+ * checking the second click, listing valid moves, detecting check and checkmate
+ * and saving/loading a game. Every benchmark runs over an opening, a middlegame and
+ * an endgame position (the "phase" parameter).
+ *
+ * The benchmarks need the JMH user library (jmh-core and jmh-generator-annprocess)
+ * on the build path, with annotation processing turned on so JMH can generate its
+ * harness. Run main() to get throughput together with the allocation rate from the
+ * GC profiler (gc.alloc.rate.norm is the bytes allocated per operation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChessModelBenchmark {
+
+    /**
+     * A benchmark position. The board is written like the first field of a FEN
+     * string, from black's back rank down. The cycle is four moves that bring the
+     * position back to where it started, so makeMove can be measured without
+     * reloading the game. The check board is a related position where the player
+     * to move is in check.
+     */
+    private record Phase(String board, boolean whiteTurn, int[][] cycle, int[] secondMove, int[] validMoves,
+                         String checkBoard, boolean checkWhiteTurn) {
+    }
+
+    private static final Map<String, Phase> PHASES = Map.of(
+            "opening", new Phase("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R", true,
+                    new int[][]{{5, 5, 7, 6}, {2, 2, 0, 1}, {7, 6, 5, 5}, {0, 1, 2, 2}},
+                    new int[]{6, 3, 4, 3}, new int[]{7, 5},
+                    // fool's mate, white is checkmated
+                    "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR", true),
+            "middlegame", new Phase("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1", true,
+                    new int[][]{{5, 2, 7, 1}, {2, 2, 0, 1}, {7, 1, 5, 2}, {0, 1, 2, 2}},
+                    new int[]{7, 5, 7, 4}, new int[]{6, 4},
+                    // the bishop checks along the open diagonal, white has to block
+                    "rnbqk1nr/pppp1ppp/8/4p3/1b1P4/7P/PPP1PPP1/RNBQKBNR", true),
+            "endgame", new Phase("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8", true,
+                    new int[][]{{4, 1, 5, 1}, {3, 7, 2, 7}, {5, 1, 4, 1}, {2, 7, 3, 7}},
+                    new int[]{6, 6, 4, 6}, new int[]{4, 1},
+                    // the rook checks along the back rank
+                    "8/8/8/8/8/5k2/8/4K2r", true)
+    );
+    // the cycles one makeMove invocation plays: 1024 moves, as many as the Position's undo stack holds before it grows
+    private static final int CYCLES = 256;
+    private static final String PIECE_LETTERS = "pnbrqk";
+    private static final String[] SHORT_NAMES = {"P", "Kn", "B", "R", "Q", "K"};
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String phase;
+
+    private ChessModel model;
+    private ChessModel checkModel;
+    private File gameFile;
+    private compoundKey[][] cycle;
+    private compoundKey secondFrom;
+    private compoundKey secondTo;
+    private compoundKey validMovesFrom;
+
+    /**
+     * Load the position of the phase into a fresh model, and the check position
+     * into a second one.
+     *
+     * @throws IOException  if the temporary save file can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Phase p = PHASES.get(phase);
+        gameFile = writeGame(p.board(), p.whiteTurn());
+        model = new ChessModel();
+        model.loadGame(gameFile, true);
+        File checkFile = writeGame(p.checkBoard(), p.checkWhiteTurn());
+        checkModel = new ChessModel();
+        checkModel.loadGame(checkFile, true);
+        checkFile.delete();
+
+        cycle = new compoundKey[p.cycle().length][];
+        for (int i = 0; i < cycle.length; i++) {
+            int[] move = p.cycle()[i];
+            cycle[i] = new compoundKey[]{new compoundKey(move[0], move[1]), new compoundKey(move[2], move[3])};
+        }
+        secondFrom = new compoundKey(p.secondMove()[0], p.secondMove()[1]);
+        secondTo = new compoundKey(p.secondMove()[2], p.secondMove()[3]);
+        validMovesFrom = new compoundKey(p.validMoves()[0], p.validMoves()[1]);
+    }
+
+    /**
+     * The model makeMove plays on. ChessModel.makeMove can't be taken back, so
+     * every move adds to the Position's history; reloading the game before each
+     * invocation keeps that history from growing during the measurement.
+     */
+    @State(Scope.Thread)
+    public static class MoveState {
+        private ChessModel model;
+
+        /**
+         * Load the phase's position again.
+         *
+         * @param benchmark     the ChessModelBenchmark state, with the phase's save file
+         * @throws IOException  if the save file can't be read
+         */
+        @Setup(Level.Invocation)
+        public void reload(ChessModelBenchmark benchmark) throws IOException {
+            if (model == null)
+                model = new ChessModel();
+            model.loadGame(benchmark.gameFile, true);
+        }
+    }
+
+    /**
+     * Remove the temporary save file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        gameFile.delete();
+    }
+
+    /**
+     * Play the four move cycle, which leaves the board as it was, CYCLES times
+     * on a freshly loaded game.
+     *
+     * @param state     the MoveState with the reloaded model
+     * @param blackhole the Blackhole that consumes the results
+     */
+    @Benchmark
+    @OperationsPerInvocation(4 * CYCLES)
+    public void makeMove(MoveState state, Blackhole blackhole) {
+        for (int i = 0; i < CYCLES; i++) {
+            for (compoundKey[] move : cycle)
+                blackhole.consume(state.model.makeMove(move[0], move[1]));
+        }
+    }
+
+    /**
+     * @return  a boolean, whether the fixed second click is legal
+     */
+    @Benchmark
+    public boolean legalSecondMove() {
+        return model.legalSecondMove(secondFrom, secondTo);
+    }
+
+    /**
+     * @return  the valid moves of the fixed piece
+     */
+    @Benchmark
+    public Object getValidMoves() {
+        return model.getValidMoves(validMovesFrom);
+    }
+
+    /**
+     * @return  a boolean, whether the player to move in the check position is in check
+     */
+    @Benchmark
+    public boolean inCheck() {
+        return checkModel.isInCheck();
+    }
+
+    /**
+     * @return  a boolean, whether the player to move in the check position is checkmated
+     */
+    @Benchmark
+    public boolean checkCheckMate() {
+        return checkModel.isCheckMate();
+    }
+
+    /**
+     * @return  the save game string
+     */
+    @Benchmark
+    public String saveGame() {
+        return model.saveGame();
+    }
+
+    /**
+     * Load the phase's position from its save file.
+     *
+     * @return              the loaded model
+     * @throws IOException  if the save file can't be read
+     */
+    @Benchmark
+    public ChessModel loadGame() throws IOException {
+        model.loadGame(gameFile, true);
+        return model;
+    }
+
+    /**
+     * Write a board to a temporary file in the save game format (see ChessModel.saveGame).
+     *
+     * @param board         a String, the board in FEN order
+     * @param whiteTurn     a boolean, true if white is to move
+     * @return              the temporary File
+     * @throws IOException  if the file can't be written
+     */
+    private static File writeGame(String board, boolean whiteTurn) throws IOException {
+        StringBuilder game = new StringBuilder();
+        game.append(whiteTurn).append("\n");
+        String[] rows = board.split("/");
+        for (int i = 0; i < rows.length; i++) {
+            int j = 0;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    j += c - '0';
+                    continue;
+                }
+                String name = SHORT_NAMES[PIECE_LETTERS.indexOf(Character.toLowerCase(c))];
+                game.append(i).append(" ").append(j).append(" ").append(name).append(" ")
+                        .append(Character.isUpperCase(c)).append("\n");
+                j++;
+            }
+        }
+        File file = File.createTempFile("chess-benchmark", ".txt");
+        FileWriter writer = new FileWriter(file);
+        writer.write(game.toString());
+        writer.close();
+        return file;
+    }
+
+    /**
+     * Run every benchmark in this class with the GC profiler attached.
+     *
+     * @param args              unused
+     * @throws RunnerException  if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChessModelBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
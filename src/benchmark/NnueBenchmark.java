@@ -0,0 +1,102 @@
+package benchmark;
+
+import model.Engine.Nnue;
+import model.Engine.NnueAccumulator;
+import model.MoveGenerator;
+import model.MoveList;
+import model.PackedMove;
+import model.Position;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class holds the JMH benchmarks comparing the Nnue on the Vector API with
+ * the same network on plain loops (the "kernel" parameter): the incremental
+ * accumulator update of a capture, the output layer, and a full refresh from
+ * every piece on the board.
+ *
+ * The forked JVM is started with --add-modules jdk.incubator.vector, without
+ * it both parameters would measure the plain loops. The network has random
+ * weights, only the speed is measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class NnueBenchmark {
+    private static final String MIDDLEGAME = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 1";
+
+    @Param({"vector", "scalar"})
+    public String kernel;
+
+    private Position position;
+    private NnueAccumulator accumulator;
+    private int capture;
+
+    /**
+     * Create the network on the kernel of the parameter and find a capture to update with.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Nnue network = Nnue.random(Nnue.DEFAULT_HIDDEN, 1);
+        if (kernel.equals("scalar"))
+            network = network.scalar();
+        else if (!network.isVectorized())
+            throw new IllegalStateException("the Vector API is not available, add jdk.incubator.vector");
+        position = Position.fromFen(MIDDLEGAME);
+        accumulator = new NnueAccumulator(network);
+        accumulator.refresh(position);
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        for (int i = 0; i < list.size(); i++) {
+            if (PackedMove.isCapture(list.get(i)))
+                capture = list.get(i);
+        }
+    }
+
+    /**
+     * Update the accumulators for a capture, and go back to the parent's.
+     */
+    @Benchmark
+    public void update() {
+        accumulator.push(position, capture);
+        accumulator.pop();
+    }
+
+    /**
+     * @return  an int, the output of the network for the root accumulators
+     */
+    @Benchmark
+    public int evaluate() {
+        return accumulator.evaluate(Position.WHITE);
+    }
+
+    /**
+     * @return  an int, the output after computing the accumulators from every piece
+     */
+    @Benchmark
+    public int refresh() {
+        accumulator.refresh(position);
+        return accumulator.evaluate(Position.WHITE);
+    }
+
+    /**
+     * Run every benchmark in this class with the GC profiler attached.
+     *
+     * @param args              unused
+     * @throws RunnerException  if JMH fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(NnueBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
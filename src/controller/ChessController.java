@@ -3,6 +3,10 @@ package controller;
 import javafx.application.Platform;
 import model.ChessModel;
 import model.ChessMoveMessage;
+import model.Position;
+import model.Engine.Bitbase;
+import model.Engine.Engine;
+import model.Engine.OpeningBook;
 import view.ChessGUIView.compoundKey;
 
 import java.io.File;
@@ -11,6 +15,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
 import java.util.Set;
 
 /**
@@ -22,9 +27,11 @@ import java.util.Set;
  */
 public class ChessController {
     private final ChessModel model;
+    private final Engine engine = new Engine();
     private Socket connection;
     private boolean isServer = false;
     private boolean isConnected = false;
+    private boolean pondering = false;
     ObjectOutputStream oos;
     ObjectInputStream ois;
 
@@ -115,6 +122,9 @@ public class ChessController {
             model.makeMove(firstClickCoords, secondClickCoords);
         } else {
             ChessMoveMessage toSend = model.networkedMove(firstClickCoords, secondClickCoords);
+            //Think about the opponent's reply while we wait for it, once our move is on the board
+            if (pondering && toSend != null)
+                engine.ponder(model);
             sendMessage(toSend);
 
         }
@@ -190,6 +200,129 @@ public class ChessController {
         return model.getValidMoves(firstClick);
     }
 
+    /**
+     * This method will ask the computer for a move for the player whose turn it is.
+     * The answer is the pair of clicks a player would make, so it can be passed
+     * straight to makeMove.
+     *
+     * @param millis    a long, the time the computer may think in milliseconds
+     * @return          a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] getEngineMove(long millis) {
+        return engine.bestMove(model, millis);
+    }
+
+    /**
+     * This method will ask the computer for a move in a copy of the game's position
+     * (see copyPosition), so the game can go on while it thinks.
+     *
+     * @param position  the Position to search, it is not changed
+     * @param millis    a long, the time the computer may think in milliseconds
+     * @return          a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] getEngineMove(Position position, long millis) {
+        return engine.bestMove(position, millis);
+    }
+
+    /**
+     * This method will ask the computer for a move for the player whose turn it is,
+     * thinking on the time left on that player's clock in competitive mode. The
+     * time is split so the clock never runs out, see TimeManager.
+     *
+     * @param remainingSeconds  a double, the time left on the clock of the player to move in seconds
+     * @return                  a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] getEngineMoveOnClock(double remainingSeconds) {
+        return engine.bestMoveOnClock(model, (long) (remainingSeconds * 1000), 0);
+    }
+
+    /**
+     * This method will ask the computer for a move in a copy of the game's position
+     * (see copyPosition), thinking on the time left on the clock of the player to move.
+     *
+     * @param position          the Position to search, it is not changed
+     * @param remainingSeconds  a double, the time left on the clock of the player to move in seconds
+     * @return                  a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] getEngineMoveOnClock(Position position, double remainingSeconds) {
+        return engine.bestMoveOnClock(position, (long) (remainingSeconds * 1000), 0);
+    }
+
+    /**
+     * This method will take a copy of the game's position, for the engine to
+     * search on another thread while the players can still click.
+     *
+     * @return  a Position, a copy of the board and game state
+     */
+    public Position copyPosition() {
+        return model.copyPosition();
+    }
+
+    /**
+     * This is a getter for the key of the game's position, to tell whether the
+     * game has moved on since a copy of it was taken.
+     *
+     * @return  a long, the Zobrist key of the position
+     */
+    public long getPositionKey() {
+        return model.getZobristKey();
+    }
+
+    /**
+     * This is a getter for how far the engine's last move on a clock went past its deadline.
+     *
+     * @return  a long, in milliseconds, negative if the deadline was met
+     */
+    public long getEngineOvershootMillis() {
+        return engine.lastOvershootMillis();
+    }
+
+    /**
+     * This method will let the engine play its opening moves from a Polyglot
+     * opening book. The book file is memory-mapped, so even a large one opens at once.
+     *
+     * @param book          the Path of the Polyglot .bin file
+     * @throws IOException  if the file can't be read
+     */
+    public void loadBook(Path book) throws IOException {
+        engine.setBook(OpeningBook.open(book));
+    }
+
+    /**
+     * This method will let the engine play the endings of king and queen, rook or
+     * pawn against king perfectly from the bitbase file (Bitbase.FILE_NAME). The
+     * first time there is no file, so it is generated and written, which takes a
+     * few seconds: call it off the JavaFX thread.
+     *
+     * @throws IOException  if the file can't be read or written
+     */
+    public void loadBitbase() throws IOException {
+        engine.loadBitbase(Path.of(Bitbase.FILE_NAME));
+    }
+
+    /**
+     * This method will turn the engine's ponder mode on or off. In ponder mode the
+     * engine keeps searching the opponent's expected reply while a networked game
+     * waits for it, so if the opponent plays that reply getEngineMove searches deeper.
+     *
+     * @param pondering a boolean, true to ponder during the opponent's turn
+     */
+    public void setPondering(boolean pondering) {
+        this.pondering = pondering;
+        if (!pondering)
+            engine.stopPondering();
+    }
+
+    /**
+     * This method will switch the engine between its alpha-beta search and Monte
+     * Carlo tree search, which plays out random games from the positions it grows.
+     *
+     * @param monteCarlo    a boolean, true to search by Monte Carlo tree search
+     */
+    public void setEngineMonteCarlo(boolean monteCarlo) {
+        engine.setMonteCarlo(monteCarlo);
+    }
+
     /**
      * This method will start the server so the users can play on a network.
      */
@@ -298,6 +431,7 @@ public class ChessController {
                         //		model.setMyTurn(true);
                         if (model.legalSecondMove(otherMsg.firstMoveCoordinateKey(), otherMsg.secondMoveCoordinateKey())) {
                             model.makeMove(otherMsg.firstMoveCoordinateKey(), otherMsg.secondMoveCoordinateKey());
+                            engine.opponentMoved(model);
                         }
                         //		model.makeMove(otherMsg.firstMoveCoordinateKey(), otherMsg.secondMoveCoordinateKey());
                     });
@@ -0,0 +1,341 @@
+package model;
+
+import model.Pieces.Piece;
+
+import static model.Position.*;
+
+/**
+ * This class holds the attack tables for every piece. The tables are built
+ * once when the class is loaded, so a lookup never allocates. Each entry is a
+ * bitboard of the attacked squares (see Position for the square layout).
+ *
+ * Knights, kings and pawns have one entry per square. Rooks and bishops use
+ * "magic" bitboards: the blockers on the slider's rays are multiplied by a
+ * per-square magic number and the top bits of the product index a table of
+ * precomputed attacks, so a sliding attack is one multiply and one array read
+ * no matter how the board is occupied.
+ */
+public final class Attacks {
+    private static final int[][] KNIGHT_OFFSETS = {
+            {1, 2}, {1, -2}, {-1, 2}, {-1, -2}, {2, 1}, {2, -1}, {-2, 1}, {-2, -1}
+    };
+    private static final int[][] KING_OFFSETS = {
+            {0, 1}, {0, -1}, {1, 0}, {1, 1}, {1, -1}, {-1, 0}, {-1, 1}, {-1, -1}
+    };
+    // white pawns move towards row 0, black pawns towards row 7
+    private static final int[][][] PAWN_OFFSETS = {
+            {{-1, 1}, {-1, -1}},
+            {{1, 1}, {1, -1}}
+    };
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    // constants for this square layout (row 0 first), found once offline by trying sparse random numbers,
+    // nothing searches for them at run time
+    private static final long[] ROOK_MAGIC = {
+            0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL, 0x8880041000800800L,
+            0x1200100201200804L, 0x0200020004011008L, 0x2180010000800600L, 0x0200005088210204L,
+            0x0400800040008021L, 0x0400400020005000L, 0x8240801000200080L, 0x8611001004200900L,
+            0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L, 0x8020802300104280L,
+            0x0080004000402000L, 0xE010104000402000L, 0x0800808010002000L, 0xA280210008100100L,
+            0x0001818014000800L, 0xA002010100080400L, 0x0080240001020870L, 0x0001020004048845L,
+            0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L, 0x0200080080100080L,
+            0x8083080100100500L, 0x4406000901000400L, 0x0005020080800100L, 0x0090204200008114L,
+            0x0010400094800420L, 0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+            0x4540040080800800L, 0x0002001004040020L, 0x0281195814001002L, 0x1240800040800100L,
+            0x0880042000524004L, 0x02C080410206002CL, 0x0801200241050010L, 0x8400080010008080L,
+            0x0008000500090010L, 0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+            0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L, 0x001B080080900080L,
+            0x001A002008100600L, 0x0004008004020080L, 0x5181000600040300L, 0x0000044401128A00L,
+            0x8044110480002441L, 0x2008110084402202L, 0x90806005090010C1L, 0x000420310A004A42L,
+            0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL, 0x0000019025040042L
+    };
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final int[] ROOK_OFFSET = new int[64];
+    private static final long[] ROOK_TABLE;
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = {
+            0x0045010808008680L, 0x2002080204004898L, 0x0210009A10400006L, 0x0824050200810200L,
+            0x0006061105004090L, 0x00010108C0000000L, 0x0814040282104004L, 0x0012012201106800L,
+            0x10823014100C1040L, 0x0080C2088802808CL, 0x0281108410404000L, 0x0101212041826200L,
+            0x0020141028221058L, 0x2201020202200202L, 0x000082A801482000L, 0x0000008401411044L,
+            0x0007103014300404L, 0x0002091110010100L, 0x42140012040C0808L, 0x0800808802004020L,
+            0x90C4004210140000L, 0x0800200900A01000L, 0x00D0400201108810L, 0x80820183814412A0L,
+            0x00A01008202202B4L, 0x01C2021A09500402L, 0x0084440208042400L, 0x800400400C090100L,
+            0xBA10040010802100L, 0xD182009006005000L, 0x5011021001009004L, 0x0020420200510400L,
+            0x0292104000468800L, 0x00043009091C0500L, 0x0280441000020025L, 0x0042820080080080L,
+            0x0440101010010040L, 0x1000900100808080L, 0x0108108120089800L, 0x0044010200012682L,
+            0xC002500420900400L, 0x0040482210710800L, 0x0002060024000200L, 0x0281020A44000800L,
+            0xA0021200A4000200L, 0x0001301000840840L, 0x2868500108444220L, 0x0004111041000200L,
+            0x8044020842080200L, 0x0000220104210200L, 0x0000021201044000L, 0x0000280884040028L,
+            0x4012114010858003L, 0x0000081004082B88L, 0x3892700508208002L, 0x00220A041B060400L,
+            0x0812020284014881L, 0x010434A282103100L, 0x0490400824020800L, 0x4A20002C00208800L,
+            0x000000A011020200L, 0x4002940A02482202L, 0x5100100202140406L, 0x02102000840540C1L
+    };
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final int[] BISHOP_OFFSET = new int[64];
+    private static final long[] BISHOP_TABLE;
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = stepAttacks(sq, KNIGHT_OFFSETS);
+            KING[sq] = stepAttacks(sq, KING_OFFSETS);
+            PAWN[WHITE][sq] = stepAttacks(sq, PAWN_OFFSETS[WHITE]);
+            PAWN[BLACK][sq] = stepAttacks(sq, PAWN_OFFSETS[BLACK]);
+            ROOK_MASK[sq] = relevantBlockers(sq, ROOK_DIRECTIONS);
+            BISHOP_MASK[sq] = relevantBlockers(sq, BISHOP_DIRECTIONS);
+        }
+        ROOK_TABLE = buildMagics(ROOK_DIRECTIONS, ROOK_MASK, ROOK_MAGIC, ROOK_SHIFT, ROOK_OFFSET);
+        BISHOP_TABLE = buildMagics(BISHOP_DIRECTIONS, BISHOP_MASK, BISHOP_MAGIC, BISHOP_SHIFT, BISHOP_OFFSET);
+        for (int from = 0; from < 64; from++)
+            for (int to = 0; to < 64; to++)
+                BETWEEN[from][to] = walkBetween(from, to);
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b)
+                    continue;
+                long ends = bit(a) | bit(b);
+                if ((rook(a, 0L) & bit(b)) != 0)
+                    LINE[a][b] = (rook(a, 0L) & rook(b, 0L)) | ends;
+                else if ((bishop(a, 0L) & bit(b)) != 0)
+                    LINE[a][b] = (bishop(a, 0L) & bishop(b, 0L)) | ends;
+            }
+        }
+    }
+
+    private Attacks() {
+    }
+
+    /**
+     * a getter for knight attacks
+     * @param sq    an int, the square index
+     * @return      a long, the attacked squares
+     */
+    public static long knight(int sq) {
+        return KNIGHT[sq];
+    }
+
+    /**
+     * a getter for king attacks
+     * @param sq    an int, the square index
+     * @return      a long, the attacked squares
+     */
+    public static long king(int sq) {
+        return KING[sq];
+    }
+
+    /**
+     * a getter for pawn attacks (the diagonal capture squares)
+     * @param color an int, WHITE or BLACK
+     * @param sq    an int, the square index
+     * @return      a long, the attacked squares
+     */
+    public static long pawn(int color, int sq) {
+        return PAWN[color][sq];
+    }
+
+    /**
+     * Get the squares a pawn can push to on an otherwise empty board, one square
+     * forward plus a second one if it has not moved yet.
+     *
+     * @param color         an int, WHITE or BLACK
+     * @param sq            an int, the square index
+     * @param hasMoved      a boolean, true if the pawn has already moved
+     * @return              a long, the push squares
+     */
+    public static long pawnPushes(int color, int sq, boolean hasMoved) {
+        long single = color == WHITE ? bit(sq) >>> 8 : bit(sq) << 8;
+        if (hasMoved)
+            return single;
+        return single | (color == WHITE ? single >>> 8 : single << 8);
+    }
+
+    /**
+     * a getter for rook attacks
+     * @param sq        an int, the square index
+     * @param occupied  a long, the squares that block the rook
+     * @return          a long, the attacked squares (including the first blocker on each ray)
+     */
+    public static long rook(int sq, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSET[sq] + (int) (((occupied & ROOK_MASK[sq]) * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    /**
+     * a getter for bishop attacks
+     * @param sq        an int, the square index
+     * @param occupied  a long, the squares that block the bishop
+     * @return          a long, the attacked squares (including the first blocker on each ray)
+     */
+    public static long bishop(int sq, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSET[sq] +
+                (int) (((occupied & BISHOP_MASK[sq]) * BISHOP_MAGIC[sq]) >>> BISHOP_SHIFT[sq])];
+    }
+
+    /**
+     * a getter for queen attacks
+     * @param sq        an int, the square index
+     * @param occupied  a long, the squares that block the queen
+     * @return          a long, the attacked squares
+     */
+    public static long queen(int sq, long occupied) {
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    /**
+     * Get the squares strictly between two squares on the same row, column
+     * or diagonal. A path is clear when this mask has no occupied squares.
+     *
+     * @param from  an int, the first square
+     * @param to    an int, the second square
+     * @return      a long, the squares in between or 0 if not aligned
+     */
+    public static long between(int from, int to) {
+        return BETWEEN[from][to];
+    }
+
+    /**
+     * Get the whole row, column or diagonal running through two squares, edge
+     * to edge. A piece pinned to its king can only move along this line.
+     *
+     * @param a an int, the first square
+     * @param b an int, the second square
+     * @return  a long, the line through both squares or 0 if not aligned
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+    /**
+     * Collect the squares reached by a fixed set of jumps. Only used to build
+     * the tables.
+     *
+     * @param sq        an int, the square index
+     * @param offsets   an array of row/column jumps
+     * @return          a long, the squares on the board reached by a jump
+     */
+    private static long stepAttacks(int sq, int[][] offsets) {
+        long attacks = 0L;
+        for (int[] offset : offsets) {
+            int r = row(sq) + offset[0];
+            int c = column(sq) + offset[1];
+            if (Piece.inBounds(r, c))
+                attacks |= bit(square(r, c));
+        }
+        return attacks;
+    }
+
+    /**
+     * Walk outward along each direction until the edge of the board or the
+     * first occupied square, which is included. Only used to build the tables.
+     *
+     * @param sq            an int, the square index
+     * @param occupied      a long, the squares that block the slider
+     * @param directions    an array of row/column steps
+     * @return              a long, the attacked squares
+     */
+    private static long slidingAttacks(int sq, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] direction : directions) {
+            int r = row(sq) + direction[0];
+            int c = column(sq) + direction[1];
+            while (Piece.inBounds(r, c)) {
+                long b = bit(square(r, c));
+                attacks |= b;
+                if ((occupied & b) != 0)
+                    break;
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * Get the squares whose occupancy can change a slider's attacks. The last
+     * square of each ray is left out, a piece there never blocks anything.
+     *
+     * @param sq            an int, the square index
+     * @param directions    an array of row/column steps
+     * @return              a long, the relevant blocker squares
+     */
+    private static long relevantBlockers(int sq, int[][] directions) {
+        long mask = 0L;
+        for (int[] direction : directions) {
+            int r = row(sq) + direction[0];
+            int c = column(sq) + direction[1];
+            while (Piece.inBounds(r + direction[0], c + direction[1])) {
+                mask |= bit(square(r, c));
+                r += direction[0];
+                c += direction[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Fill one flat table with the attacks of every blocker subset of every
+     * square. Each square gets 2^n slots, where n is the number of relevant
+     * blocker squares, and its magic number maps every subset to a slot that
+     * holds the attacks for that subset. The magic numbers are hardcoded: they
+     * were found once, offline, by trying sparse random numbers until no two
+     * subsets with different attacks shared a slot. This method only fills the
+     * table from them.
+     *
+     * @param directions    an array of row/column steps for the slider
+     * @param masks         the relevant blocker mask of each square
+     * @param magics        the magic number of each square
+     * @param shifts        filled with the index shift of each square
+     * @param offsets       filled with the start of each square's slice of the table
+     * @return              the attack table
+     */
+    private static long[] buildMagics(int[][] directions, long[] masks, long[] magics, int[] shifts,
+                                      int[] offsets) {
+        int size = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            offsets[sq] = size;
+            size += 1 << Long.bitCount(masks[sq]);
+        }
+        long[] table = new long[size];
+        for (int sq = 0; sq < 64; sq++) {
+            shifts[sq] = 64 - Long.bitCount(masks[sq]);
+            // enumerate every subset of the mask (carry-rippler)
+            long subset = 0L;
+            do {
+                table[offsets[sq] + (int) ((subset * magics[sq]) >>> shifts[sq])] =
+                        slidingAttacks(sq, subset, directions);
+                subset = (subset - masks[sq]) & masks[sq];
+            } while (subset != 0L);
+        }
+        return table;
+    }
+
+    /**
+     * Walk from one square towards another and collect the squares in between.
+     * Only used to build the tables.
+     *
+     * @param from  an int, the first square
+     * @param to    an int, the second square
+     * @return      a long, the squares in between or 0 if not aligned
+     */
+    private static long walkBetween(int from, int to) {
+        int dRow = row(to) - row(from);
+        int dCol = column(to) - column(from);
+        if ((dRow == 0 && dCol == 0) || (dRow != 0 && dCol != 0 && Math.abs(dRow) != Math.abs(dCol)))
+            return 0L;
+        int stepRow = Integer.signum(dRow);
+        int stepCol = Integer.signum(dCol);
+        long squares = 0L;
+        for (int r = row(from) + stepRow, c = column(from) + stepCol; r != row(to) || c != column(to);
+             r += stepRow, c += stepCol)
+            squares |= bit(square(r, c));
+        return squares;
+    }
+}
@@ -11,54 +11,39 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.*;
 
+import static model.Position.*;
+
 /**
  * This class represents the model in the MVC format of the program.
  * It will handle most of the logic behind the game play. Specifically,
  * it will determine which moves are valid/invalid and which player's turn it
  * is. It will be observed by the view (ChessGUIView) and as a result,
  * will notify the GUI to ensure the game is properly displayed to the user.
+ *
+ * The board itself is stored in a bitboard Position (see Position), the
+ * methods below translate the GUI's compoundKey coordinates into squares
+ * and look the clicked move up among the generated moves (see MoveGenerator).
  */
 public class ChessModel extends Observable {
     private static final int WIDTH_HEIGHT = 8;
-    private static final String white = "white";
-    private static final String black = "black";
-    private boolean whiteTurn = true;
-    private List<List<Piece>> boardGrid;
+    private static final String[] ICONS = {
+            "\u2659", "\u2658", "\u2657", "\u2656", "\u2655", "\u2654",
+            "\u265F", "\u265E", "\u265D", "\u265C", "\u265B", "\u265A"
+    };
+    private static final String[] SHORT_NAMES = {"P", "Kn", "B", "R", "Q", "K"};
+    private Position position;
+    private final MoveList moveList = new MoveList();
     List<List<String>> savedGame = new ArrayList<>();
-    private Map<String, Set<Piece>> pieceMap = new HashMap<>();
-    private Map<String, Piece> kingMap = new HashMap<>();
     private boolean myTurn = true;
 
     /**
-     * The constructor will initialize a grid and a map of game pieces
-     * to track the game progress.
+     * The constructor will initialize the bitboard position that
+     * tracks the game progress.
      *
      * @throws IOException  throw exception if program fails.
      */
     public ChessModel() throws IOException {
         initGrid();
-        initPieceMap();
-    }
-
-    /**
-     * This method will create maps to track the game pieces.
-     */
-    private void initPieceMap() {
-        pieceMap = new HashMap<>();
-        kingMap = new HashMap<>();
-        pieceMap.put(white, new HashSet<>());
-        pieceMap.put(black, new HashSet<>());
-        boardGrid.forEach(list -> list.stream().filter(Objects::nonNull).forEach(piece -> {
-            if (piece.getColor()) {
-                pieceMap.get(white).add(piece);
-                if (piece.getShortName().equals("K"))
-                    kingMap.put(white, piece);
-            } else {
-                pieceMap.get(black).add(piece);
-                if (piece.getShortName().equals("K"))
-                    kingMap.put(black, piece);
-            }
-        }));
     }
 
     /**
@@ -70,19 +55,18 @@ public class ChessModel extends Observable {
      */
     public String saveGame() {
         StringBuilder gameData = new StringBuilder();
-        gameData.append(String.valueOf(whiteTurn) + "\n");
-        for (List<Piece> row : boardGrid) {
-            for (Piece piece : row) {
-                if (piece != null) {
-                    gameData.append(piece.getRow());
-                    gameData.append(" ");
-                    gameData.append(piece.getColumn());
-                    gameData.append(" ");
-                    gameData.append(piece.getShortName());
-                    gameData.append(" ");
-                    gameData.append(piece.getColor());
-                    gameData.append("\n");
-                }
+        gameData.append(String.valueOf(isWhiteTurn()) + "\n");
+        for (int sq = 0; sq < 64; sq++) {
+            int piece = position.pieceAt(sq);
+            if (piece != EMPTY) {
+                gameData.append(row(sq));
+                gameData.append(" ");
+                gameData.append(column(sq));
+                gameData.append(" ");
+                gameData.append(SHORT_NAMES[typeOf(piece)]);
+                gameData.append(" ");
+                gameData.append(colorOf(piece) == WHITE);
+                gameData.append("\n");
             }
         }
 
@@ -119,9 +103,10 @@ public class ChessModel extends Observable {
         if (gameFile == null) {
             myTurn = isWhite;
             initGrid();
-            
+
         } else {
-            initBlankGrid();
+            position = new Position();
+            savedGame.clear();
             BufferedReader br = new BufferedReader(new FileReader(gameFile));
             String line = br.readLine();
             while (line != null) {
@@ -131,52 +116,36 @@ public class ChessModel extends Observable {
             }
 
             for (List<String> s : savedGame) {
-            	if (s.size() == 1) whiteTurn = Boolean.valueOf(s.get(0));
+            	if (s.size() == 1) setWhiteTurn(Boolean.valueOf(s.get(0)));
                 if (s.size() == 4) {
-                    Piece toAdd = null;
                     int i = Integer.valueOf(s.get(0));
                     int j = Integer.valueOf(s.get(1));
-                    switch (s.get(2)) {
-                        case "Kn" -> toAdd = new Knight(i, j, Boolean.valueOf(s.get(3)));
-                        case "K" -> toAdd = new King(i, j, Boolean.valueOf(s.get(3)));
-                        case "B" -> toAdd = new Bishop(i, j, Boolean.valueOf(s.get(3)));
-                        case "P" -> toAdd = new Pawn(i, j, Boolean.valueOf(s.get(3)));
-                        case "Q" -> toAdd = new Queen(i, j, Boolean.valueOf(s.get(3)));
-                        case "R" -> toAdd = new Rook(i, j, Boolean.valueOf(s.get(3)));
-                    }
-                    boardGrid.get(i).add(j, toAdd);
+                    int color = Boolean.valueOf(s.get(3)) ? WHITE : BLACK;
+                    int type = Arrays.asList(SHORT_NAMES).indexOf(s.get(2));
+                    if (type >= 0)
+                        position.put(piece(color, type), square(i, j));
                 }
             }
             br.close();
-        } 
-        initPieceMap();
+            position.deriveCastlingRights();
+        }
         setChanged();
         notifyObservers("reset");
     }
 
     /**
-     * The method builds a grid to track game progress. That is,
+     * The method builds the starting position to track game progress. That is,
      * pieces and their location on the game board.
      */
     private void initGrid() {
-        boardGrid = new ArrayList<>();
-        for (int i = 0; i < WIDTH_HEIGHT; i++)
-            boardGrid.add(new ArrayList<>());
+        position = new Position();
         for (int i = 0; i < WIDTH_HEIGHT; i++)
-            for (int j = 0; j < WIDTH_HEIGHT; j++)
-                boardGrid.get(i).add(j, checkCoordinate(i, j));
-    }
-
-    /**
-     * Similar to the above method, but grid is empty.
-     */
-    private void initBlankGrid() {
-        boardGrid = new ArrayList<>();
-        for (int i = 0; i < WIDTH_HEIGHT; i++)
-            boardGrid.add(new ArrayList<>());
-        for (int i = 0; i < WIDTH_HEIGHT; i++)
-            for (int j = 0; j < WIDTH_HEIGHT; j++)
-                boardGrid.get(i).add(j, null);
+            for (int j = 0; j < WIDTH_HEIGHT; j++) {
+                int piece = checkCoordinate(i, j);
+                if (piece != EMPTY)
+                    position.put(piece, square(i, j));
+            }
+        position.setCastlingRights(ALL_CASTLING);
     }
 
     /**
@@ -185,45 +154,28 @@ public class ChessModel extends Observable {
      *
      * @param i     an int representing an x coord
      * @param j     an int representing an y coord
-     * @return      a game Piece object
+     * @return      an int, the piece code (see Position) or EMPTY
      */
-    private Piece checkCoordinate(int i, int j) {
+    private int checkCoordinate(int i, int j) {
         // black pawn
         if (i == 1)
-            return new Pawn(i, j, false);
+            return piece(BLACK, PAWN);
         // white pawn
         if (i == 6)
-            return new Pawn(i, j, true);
-        // black rook
-        if (i == 0 && j == 0 || i == 0 && j == 7)
-            return new Rook(i, j, false);
-        // white rook
-        if (i == 7 && j == 0 || i == 7 && j == 7)
-            return new Rook(i, j, true);
-        // black knight 
-        if (i == 0 && j == 1 || i == 0 && j == 6)
-            return new Knight(i, j, false);
-        // white knight
-        if (i == 7 && j == 6 || i == 7 && j == 1)
-            return new Knight(i, j, true);
-        // black bishop
-        if (i == 0 && j == 2 || i == 0 && j == 5)
-            return new Bishop(i, j, false);
-        if (i == 7 && j == 2 || i == 7 && j == 5)
-            return new Bishop(i, j, true);
-        // black queen
-        if (i == 0 && j == 3)
-            return new Queen(i, j, false);
-        // white queen
-        if (i == 7 && j == 3)
-            return new Queen(i, j, true);
-        // black king
-        if (i == 0 && j == 4)
-            return new King(i, j, false);
-        if (i == 7 && j == 4)
-            return new King(i, j, true);
+            return piece(WHITE, PAWN);
+        // back ranks
+        int color = i == 0 ? BLACK : WHITE;
+        if (i == 0 || i == 7) {
+            return switch (j) {
+                case 0, 7 -> piece(color, ROOK);
+                case 1, 6 -> piece(color, KNIGHT);
+                case 2, 5 -> piece(color, BISHOP);
+                case 3 -> piece(color, QUEEN);
+                default -> piece(color, KING);
+            };
+        }
         // empty space
-        return null;
+        return EMPTY;
 
     }
 
@@ -235,7 +187,7 @@ public class ChessModel extends Observable {
      * @return  a boolean indicating the status of the white player's turn
      */
     public boolean isWhiteTurn() {
-        return whiteTurn;
+        return position.sideToMove() == WHITE;
     }
 
     /**
@@ -245,7 +197,7 @@ public class ChessModel extends Observable {
      * @param turn  a boolean, set the status of the white player's turn
      */
     public void setWhiteTurn(boolean turn) {
-    	whiteTurn = turn;
+    	position.setSideToMove(turn ? WHITE : BLACK);
     }
 
     /**
@@ -260,170 +212,46 @@ public class ChessModel extends Observable {
      * @return              a boolean, true if legal, else false
      */
     public boolean legalFirstClick(compoundKey coordinates) {
-        int i = coordinates.i();
-        int j = coordinates.j();
-        Piece piece = boardGrid.get(i).get(j);
-        if (piece == null)
+        int piece = position.pieceAt(toSquare(coordinates));
+        if (piece == EMPTY)
             return false;
-        return piece.getColor() == whiteTurn;
-    }
-
-    /**
-     * Check the first and second click coordinates to see if there are any
-     * horizontal restrictions preventing the player from making the proposed move.
-     *
-     * @param possibleMoves     a Set of Lists of moves the player could make
-     * @param firstClickCoords  a compoundKey with the x,y coords of the first click
-     * @param secondClickCoords a compoundKey with the x,y coords of the second click
-     * @return                  a boolean, return true if the move can be made, else false
-     */
-    private boolean horizontalCheck(Set<List<Integer>> possibleMoves, compoundKey firstClickCoords,
-                                    compoundKey secondClickCoords) {
-        boolean clearPath = true;
-        boolean left = secondClickCoords.j() < firstClickCoords.j();
-        int firstI = firstClickCoords.i();
-        int secondI = secondClickCoords.i();
-        int secondJ = secondClickCoords.j();
-
-        for (List<Integer> move : possibleMoves) {
-            if (move.get(0) == secondI && move.get(1) == secondJ || move.get(0) != firstI) continue;
-            if (left) {
-                if (move.get(1) > firstClickCoords.j() || move.get(1) < secondClickCoords.j()) continue;
-                else if (boardGrid.get(firstI).get(move.get(1)) != null) {
-                    clearPath = false;
-                }
-            } else { // right
-                if (move.get(1) < firstClickCoords.j() || move.get(1) > secondClickCoords.j()) continue;
-                else if (boardGrid.get(firstI).get(move.get(1)) != null) {
-                    clearPath = false;
-                }
-            }
-        }
-        return clearPath;
-    }
-
-    /**
-     * Check the first and second click coordinates to see if there are any
-     * vertical restrictions preventing the player from making the proposed move.
-     *
-     * @param possibleMoves     a Set of Lists of moves the player could make
-     * @param firstClickCoords  a compoundKey with the x,y coords of the first click
-     * @param secondClickCoords a compoundKey with the x,y coords of the second click
-     * @return                  a boolean, return true if the move can be made, else false
-     */
-    private boolean verticalCheck(Set<List<Integer>> possibleMoves, compoundKey firstClickCoords,
-                                  compoundKey secondClickCoords) {
-        boolean clearPath = true;
-        boolean up = secondClickCoords.i() < firstClickCoords.i();
-        int firstJ = firstClickCoords.j();
-        int secondI = secondClickCoords.i();
-        int secondJ = secondClickCoords.j();
-
-        for (List<Integer> move : possibleMoves) {
-            if (move.get(0) == secondI && move.get(1) == secondJ || move.get(1) != firstJ) continue;
-            if (up) {
-                if (move.get(0) > firstClickCoords.i() || move.get(0) < secondClickCoords.i()) continue;
-                else if (boardGrid.get(move.get(0)).get(firstJ) != null) {
-                    clearPath = false;
-                }
-            } else { // down
-                if (move.get(0) < firstClickCoords.i() || move.get(0) > secondClickCoords.i()) continue;
-                else if (boardGrid.get(move.get(0)).get(firstJ) != null) {
-                    clearPath = false;
-                }
-            }
-        }
-        return clearPath;
+        return colorOf(piece) == position.sideToMove();
     }
 
     /**
-     * This method will check to see if the pawn in question can make the proposed move.
+     * Convert the GUI coordinates of a click into a board square.
      *
-     * @param firstClickCoords  a compoundKey with the x,y coords of the first click
-     * @param secondClickCoords a compoundKey with the x,y coords of the second click
-     * @return                  a boolean, true if move can be made, else false
+     * @param coordinates   a compoundKey storing x,y coords
+     * @return              an int, the square index (see Position)
      */
-    private boolean pawnCheck(compoundKey firstClickCoords, compoundKey secondClickCoords) {
-        boolean clearPath = true;
-        boolean right = secondClickCoords.j() > firstClickCoords.j();
-        boolean left = secondClickCoords.j() < firstClickCoords.j();
-
-
-        Piece pawn = boardGrid.get(firstClickCoords.i()).get(firstClickCoords.j());
-        Piece secondSpot = boardGrid.get(secondClickCoords.i()).get(secondClickCoords.j());
-
-        // if the pawn is moving left or right, we already know it's also moving vertically based on its
-        // possibleMoves checked previously
-        if ((left || right) && secondSpot == null) {
-            clearPath = false;
-        } else if ((left || right) && secondSpot != null) {
-            return secondSpot.getColor() != pawn.getColor();
-        }
-        
-        // this is a blocked vertical move
-        if ((!left && !right) && secondSpot != null) {
-            clearPath = false;
-        }
-
-        // Check if there is a piece in front of the pawn on its first move.
-        if (!((Pawn) pawn).madeFirstMove()) {
-			Piece middleSpot = pawn.getColor() ?
-					boardGrid.get(secondClickCoords.i() + 1).get(secondClickCoords.j()) :
-					boardGrid.get(secondClickCoords.i() - 1).get(secondClickCoords.j());
-			if (middleSpot != null && middleSpot != pawn) clearPath = false;
-		}
-
-		return clearPath;
+    private static int toSquare(compoundKey coordinates) {
+        return square(coordinates.i(), coordinates.j());
     }
 
     /**
-     * Check the first and second click coordinates to see if there are any
-     * vertical restrictions preventing the player from making the proposed move.
+     * Find the legal move (see PackedMove) matching a pair of clicks. A castle
+     * can be clicked as king to rook, rook to king or king to its destination.
+     * A pawn reaching the far row promotes to a Queen.
      *
-     * @param possibleMoves     a Set of Lists of moves the player could make
-     * @param firstClickCoords  a compoundKey with the x,y coords of the first click
-     * @param secondClickCoords a compoundKey with the x,y coords of the second click
-     * @return                  a boolean, return true if the move can be made, else false
+     * @param from  an int, the square of the first click
+     * @param to    an int, the square of the second click
+     * @return      an int, the packed move or PackedMove.NONE if there is none
      */
-    private boolean diagonalCheck(Set<List<Integer>> possibleMoves, compoundKey firstClickCoords,
-                                  compoundKey secondClickCoords) {
-        boolean clearPath = true;
-        boolean right = secondClickCoords.j() > firstClickCoords.j();
-        boolean left = secondClickCoords.j() < firstClickCoords.j();
-        boolean down = secondClickCoords.i() > firstClickCoords.i();
-        boolean up = secondClickCoords.i() < firstClickCoords.i();
-        int secondI = secondClickCoords.i();
-        int secondJ = secondClickCoords.j();
-
-        for (List<Integer> move : possibleMoves) {
-            if (move.get(0) == secondI && move.get(1) == secondJ) continue;
-            if (up && left) {
-                if (move.get(0) > firstClickCoords.i() || move.get(0) < secondClickCoords.i() ||
-                        move.get(1) > firstClickCoords.j() || move.get(1) < secondClickCoords.j()) continue;
-                else if (boardGrid.get(move.get(0)).get(move.get(1)) != null) {
-                    clearPath = false;
-                }
-            } else if (up && right) {
-                if (move.get(0) > firstClickCoords.i() || move.get(0) < secondClickCoords.i() ||
-                        move.get(1) < firstClickCoords.j() || move.get(1) > secondClickCoords.j()) continue;
-                else if (boardGrid.get(move.get(0)).get(move.get(1)) != null) {
-                    clearPath = false;
-                }
-            } else if (down && left) {
-                if (move.get(0) < firstClickCoords.i() || move.get(0) > secondClickCoords.i() ||
-                        move.get(1) > firstClickCoords.j() || move.get(1) < secondClickCoords.j()) continue;
-                else if (boardGrid.get(move.get(0)).get(move.get(1)) != null) {
-                    clearPath = false;
-                }
-            } else if (down && right) {
-                if (move.get(0) < firstClickCoords.i() || move.get(0) > secondClickCoords.i() ||
-                        move.get(1) < firstClickCoords.j() || move.get(1) > secondClickCoords.j()) continue;
-                else if (boardGrid.get(move.get(0)).get(move.get(1)) != null) {
-                    clearPath = false;
-                }
+    private int findMove(int from, int to) {
+        MoveGenerator.generateLegal(position, moveList);
+        for (int i = 0; i < moveList.size(); i++) {
+            int move = moveList.get(i);
+            if (PackedMove.isCastle(move)) {
+                int king = PackedMove.from(move);
+                int rook = PackedMove.castleRookFrom(move);
+                if ((from == king && (to == rook || to == PackedMove.to(move))) || (from == rook && to == king))
+                    return move;
+            } else if (PackedMove.from(move) == from && PackedMove.to(move) == to &&
+                    (!PackedMove.isPromotion(move) || PackedMove.promotion(move) == QUEEN)) {
+                return move;
             }
         }
-        return clearPath;
+        return PackedMove.NONE;
     }
 
     /**
@@ -435,61 +263,12 @@ public class ChessModel extends Observable {
      * @return                  a boolean, true if move can be made, else false
      */
     public boolean checkPath(compoundKey firstClickCoords, compoundKey secondClickCoords) {
-
-        Piece firstPiece = boardGrid.get(firstClickCoords.i()).get(firstClickCoords.j());
-
-        Set<List<Integer>> possibleMoves = firstPiece.moveSet();
+        int from = toSquare(firstClickCoords);
+        int to = toSquare(secondClickCoords);
+        if (typeOf(position.pieceAt(from)) == PAWN)
+            return findMove(from, to) != PackedMove.NONE;
         // we don't care about the destination - just the path in between
-
-        String direction;
-        if (firstClickCoords.i() == secondClickCoords.i()) direction = "horizontal";
-        else if (firstClickCoords.j() == secondClickCoords.j()) direction = "vertical";
-        else direction = "diagonal";
-
-        boolean clearPath = true;
-
-        if (firstPiece instanceof Pawn) clearPath = pawnCheck(firstClickCoords, secondClickCoords);
-        else {
-            switch (direction) {
-                case "horizontal" -> clearPath = horizontalCheck(possibleMoves, firstClickCoords, secondClickCoords);
-                case "vertical" -> clearPath = verticalCheck(possibleMoves, firstClickCoords, secondClickCoords);
-                case "diagonal" -> {
-                    if (firstPiece instanceof Queen) { // When moving diagonally, we only need to consider a limited
-                        // subset of possible moves for a queen
-                        possibleMoves = filterQueenMoves(possibleMoves, firstClickCoords);
-                    } else if (firstPiece instanceof King) { // Same as above for king
-                        filterKingMoves(possibleMoves, firstClickCoords);
-                    }
-                    clearPath = diagonalCheck(possibleMoves, firstClickCoords, secondClickCoords);
-                }
-            }
-        }
-        return clearPath;
-    }
-
-    /**
-     * This method determines the possible moves that can be made by the Queen.
-     *
-     * @param possibleMoves     a Set of Integer Lists of possible moves
-     * @param firstClickCoords  a compoundKey of x,y coords for the first click
-     * @return                  an updated Set of Integer Lists of possible moves
-     */
-    public Set<List<Integer>> filterQueenMoves(Set<List<Integer>> possibleMoves, compoundKey firstClickCoords) {
-        Piece firstPiece = boardGrid.get(firstClickCoords.i()).get(firstClickCoords.j());
-        Bishop bishop = new Bishop(firstClickCoords.i(), firstClickCoords.j(), firstPiece.getColor());
-        possibleMoves = bishop.moveSet();
-        return possibleMoves;
-    }
-
-    /**
-     * This method determines the possible moves that can be made by the King.
-     * Note: If a king is moving diagonally, we don't need to check their horizontal or vertical move
-     *
-     * @param possibleMoves     a Set of Integer Lists of possible moves
-     * @param firstClickCoords  a compoundKey of x,y coords for the first click
-     */
-    public void filterKingMoves(Set<List<Integer>> possibleMoves, compoundKey firstClickCoords) {
-        possibleMoves.removeIf(move -> move.get(0) == firstClickCoords.i() || move.get(1) == firstClickCoords.j());
+        return (Attacks.between(from, to) & position.occupied()) == 0;
     }
 
     /**
@@ -500,27 +279,9 @@ public class ChessModel extends Observable {
      * @return                  a boolean, true if move is legal, else false
      */
     public boolean legalSecondMove(compoundKey firstClickCoords, compoundKey secondClickCoords) {
-    	
-    	Piece firstPiece = boardGrid.get(firstClickCoords.i()).get(firstClickCoords.j());
-        Piece secondPiece = boardGrid.get(secondClickCoords.i()).get(secondClickCoords.j());
-        Set<List<Integer>> possibleMoves = firstPiece.moveSet();
-        String enemyColor = whiteTurn ? black : white;
-        String color = whiteTurn ? white : black;
-        
-        boolean castle = isCastlePossible(firstPiece, secondPiece, firstClickCoords, secondClickCoords, color,  enemyColor);
-        
-        if (firstPiece instanceof Pawn) return pawnCheck(firstClickCoords, secondClickCoords);
-        
-        if (!possibleMoves.contains(Arrays.asList(secondClickCoords.i(), secondClickCoords.j())) ||
-                (secondPiece != null && firstPiece.getColor() == secondPiece.getColor())) {
-            return castle;
-        }
-        return true;
+        return findMove(toSquare(firstClickCoords), toSquare(secondClickCoords)) != PackedMove.NONE;
     }
 
-
-
-
     /**
      * If both the first and second proposed clicks are deemed valid, make the move.
      *
@@ -529,60 +290,12 @@ public class ChessModel extends Observable {
      * @return                      a boolean, true if move is legal, else false
      */
     public boolean makeMove(compoundKey firstClickCoords, compoundKey secondClickCoords) {
-        boolean clearPath = false;
-        boolean check = false;
-        String enemyColor = whiteTurn ? black : white;
-        String color = whiteTurn ? white : black;
-        Piece firstPiece = boardGrid.get(firstClickCoords.i()).get(firstClickCoords.j());
-        Piece secondPiece = boardGrid.get(secondClickCoords.i()).get(secondClickCoords.j());
-        Set<List<Integer>> possibleMoves = firstPiece.moveSet();
-
-        // need to check castle here
-        boolean castle = checkCastle(firstPiece, secondPiece, firstClickCoords, secondClickCoords, color, enemyColor);
-        if (castle) {
-            whiteTurn = !whiteTurn;
-            return true; //true
-        }
-
-        if (!possibleMoves.contains(Arrays.asList(secondClickCoords.i(), secondClickCoords.j())) ||
-                (secondPiece != null && firstPiece.getColor() == secondPiece.getColor())) {
+        ChessMoveMessage message = playMove(firstClickCoords, secondClickCoords);
+        if (message == null)
             return false; //false
-        }
-
-        if (firstPiece instanceof Knight)
-            clearPath = true;
-        else
-            clearPath = checkPath(firstClickCoords, secondClickCoords);
-
-        if (clearPath) {
-            executeMove(firstClickCoords, secondClickCoords, firstPiece, secondPiece);
-            check = inCheck(color, enemyColor);
-            // if we are in check we need to undo the move and return false
-            if (check) {
-                // undo move
-                undoMove(firstClickCoords, secondClickCoords, firstPiece, secondPiece, enemyColor);
-                return false; //false
-            }
-            // sets the first piece to a queen if pawn promoted
-            firstPiece = checkPromotePawn(firstPiece, secondClickCoords);
-            Move before = new Move(firstClickCoords.i(), firstClickCoords.j(), "");
-            Move after = new Move(secondClickCoords.i(), secondClickCoords.j(), firstPiece.getIcon());
-
-            // see if our move put the opponent in checkmate
-            boolean checkMate = false;
-            if (inCheck(enemyColor, color)) {
-                checkMate = checkCheckMate(enemyColor, color);
-            }
-            
-            
-            setChanged();
-            notifyObservers(new ChessMoveMessage(before, after, checkMate, false, null, null));
-            
-            
-            whiteTurn = !whiteTurn;
-            return true; //true
-        }
-        return false; //false
+        setChanged();
+        notifyObservers(message);
+        return true; //true
     }
 
 
@@ -597,122 +310,52 @@ public class ChessModel extends Observable {
      * @return                  a ChessMoveMessage with info about the attempted move
      */
     public ChessMoveMessage networkedMove(compoundKey firstClickCoords, compoundKey secondClickCoords) {
-        boolean clearPath = false;
-        boolean check = false;
-        String enemyColor = whiteTurn ? black : white;
-        String color = whiteTurn ? white : black;
-        Piece firstPiece = boardGrid.get(firstClickCoords.i()).get(firstClickCoords.j());
-        Piece secondPiece = boardGrid.get(secondClickCoords.i()).get(secondClickCoords.j());
-        Set<List<Integer>> possibleMoves = firstPiece.moveSet();
-
+        ChessMoveMessage message = playMove(firstClickCoords, secondClickCoords);
+        if (message == null)
+            return null; //false
+        setChanged();
+        notifyObservers(message);
         // todo fix networked castle
-        // need to check castle here
-        boolean castle = checkCastle(firstPiece, secondPiece, firstClickCoords, secondClickCoords, color, enemyColor);
-        if (castle) {
-            whiteTurn = !whiteTurn;
+        if (message.castleMove)
             return null; //true
-        }
-
-
-        if (!possibleMoves.contains(Arrays.asList(secondClickCoords.i(), secondClickCoords.j())) ||
-                (secondPiece != null && firstPiece.getColor() == secondPiece.getColor())) {
-            return null; //false
-        }
-
-        if (firstPiece instanceof Knight)
-            clearPath = true;
-        else
-            clearPath = checkPath(firstClickCoords, secondClickCoords);
-
-        if (clearPath) {
-            executeMove(firstClickCoords, secondClickCoords, firstPiece, secondPiece);
-            check = inCheck(color, enemyColor);
-            // if we are in check we need to undo the move and return false
-            if (check) {
-                // undo move
-                undoMove(firstClickCoords, secondClickCoords, firstPiece, secondPiece, enemyColor);
-                return null; //false
-            }
-            // sets the first piece to a queen if pawn promoted
-            firstPiece = checkPromotePawn(firstPiece, secondClickCoords);
-            Move before = new Move(firstClickCoords.i(), firstClickCoords.j(), "");
-            Move after = new Move(secondClickCoords.i(), secondClickCoords.j(), firstPiece.getIcon());
-
-            // see if our move put the opponent in checkmate
-            boolean checkMate = false;
-            if (inCheck(enemyColor, color)) {
-                checkMate = checkCheckMate(enemyColor, color);
-            }
-            
-            whiteTurn = !whiteTurn;
-            setChanged();
-            notifyObservers(new ChessMoveMessage(before, after, checkMate, false, null, null));
-            return new ChessMoveMessage(before, after, checkMate, false, null, null); //true
-        }
-        return null; //false
+        return message; //true
     }
 
     /**
-     * Check if a castle move is possible.
+     * Check and play a move on the board, shared by the local and networked games.
+     * The turn passes to the other player once the move is made.
      *
-     * @param firstPiece        the first game Piece
-     * @param secondPiece       the second game Piece
      * @param firstClickCoords  a compoundKey with x,y coords of first click
      * @param secondClickCoords a compoundKey with x,y coords of second click
-     * @param color             a String representing the player piece color
-     * @param enemyColor        a String representing the enemy piece color
-     * @return                  a boolean, true if castle is possible, else false
-     */
-    private boolean checkCastle(Piece firstPiece, Piece secondPiece, compoundKey firstClickCoords,
-                                compoundKey secondClickCoords, String color, String enemyColor) {
-
-        if (!isCastlePossible(firstPiece,secondPiece,firstClickCoords,secondClickCoords,color,enemyColor))
-            return false;
-        
-        Piece rook;
-        Piece king;
-        if (firstPiece instanceof Rook) {
-            rook = firstPiece;
-            king = secondPiece;
-        } else {
-            rook = secondPiece;
-            king = firstPiece;
+     * @return                  a ChessMoveMessage describing the move, null if it is illegal
+     */
+    private ChessMoveMessage playMove(compoundKey firstClickCoords, compoundKey secondClickCoords) {
+        int move = findMove(toSquare(firstClickCoords), toSquare(secondClickCoords));
+        if (move == PackedMove.NONE)
+            return null;
+        int enemyColor = position.sideToMove() ^ 1;
+        position.makeMove(move);
+
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        Move before = new Move(row(from), column(from), "");
+        // see if our move put the opponent in checkmate
+        boolean checkMate = position.inCheck(enemyColor) && checkCheckMate(enemyColor);
+        if (PackedMove.isCastle(move)) {
+            int rookFrom = PackedMove.castleRookFrom(move);
+            int rookTo = PackedMove.castleRookTo(move);
+            Move after = new Move(row(rookFrom), column(rookFrom), "");
+            Move kingMove = new Move(row(to), column(to), ICONS[position.pieceAt(to)]);
+            Move rookMove = new Move(row(rookTo), column(rookTo), ICONS[position.pieceAt(rookTo)]);
+            return new ChessMoveMessage(before, after, checkMate, true, kingMove, rookMove);
         }
-        compoundKey rookCoords = new compoundKey(rook.getRow(), rook.getColumn());
-        compoundKey kingCoords = new compoundKey(king.getRow(), king.getColumn());
-        if (checkPath(rookCoords, kingCoords)) {
-            int dist = Math.abs(rook.getColumn() - king.getColumn());
-            boardGrid.get(king.getRow()).set(king.getColumn(), null);
-            boardGrid.get(rook.getRow()).set(rook.getColumn(), null);
-            if (dist == 3) {
-                king.move(king.getRow(), king.getColumn() + 2);
-                rook.move(rook.getRow(), rook.getColumn() - 2);
-            } else {
-                king.move(king.getRow(), king.getColumn() - 2);
-                rook.move(rook.getRow(), rook.getColumn() + 3);
-            }
-            boardGrid.get(king.getRow()).set(king.getColumn(), king);
-            boardGrid.get(rook.getRow()).set(rook.getColumn(), rook);
-            boolean castleCheck = inCheck(color, enemyColor);
-            if (castleCheck) {
-                boardGrid.get(king.getRow()).set(king.getColumn(), null);
-                boardGrid.get(rook.getRow()).set(rook.getColumn(), null);
-                king.move(kingCoords.i(), kingCoords.j());
-                rook.move(rookCoords.i(), rookCoords.j());
-                boardGrid.get(king.getRow()).set(king.getColumn(), king);
-                boardGrid.get(rook.getRow()).set(rook.getColumn(), rook);
-                return false;
-            }
-            Move before = new Move(firstClickCoords.i(), firstClickCoords.j(), "");
-            Move after = new Move(secondClickCoords.i(), secondClickCoords.j(), "");
-            Move kingMove = new Move(king.getRow(), king.getColumn(), king.getIcon());
-            Move rookMove = new Move(rook.getRow(), rook.getColumn(), rook.getIcon());
-            setChanged();
-            notifyObservers(new ChessMoveMessage(before, after, false, true, rookMove, kingMove));
-            return true;
+        Move after = new Move(row(to), column(to), ICONS[position.pieceAt(to)]);
+        ChessMoveMessage message = new ChessMoveMessage(before, after, checkMate, false, null, null);
+        if (PackedMove.isEnPassant(move)) {
+            int victim = PackedMove.enPassantVictim(move);
+            message.getMoveSet().add(new Move(row(victim), column(victim), ""));
         }
-        return false;
-
+        return message;
     }
 
     /**
@@ -721,180 +364,59 @@ public class ChessModel extends Observable {
      * @return  a boolean, true if it is white's turn, else false
      */
     public boolean getWhiteTurn() {
-    	return whiteTurn;
-    }
-
-    /**
-     * Check if a castle move is possible.
-     *
-     * @param firstPiece        the first game Piece
-     * @param secondPiece       the second game Piece
-     * @param firstClickCoords  a compoundKey with x,y coords of first click
-     * @param secondClickCoords a compoundKey with x,y coords of second click
-     * @param color             a String representing the player piece color
-     * @param enemyColor        a String representing the enemy piece color
-     * @return                  a boolean, true if castle is possible, else false
-     */
-    private boolean isCastlePossible(Piece firstPiece, Piece secondPiece, compoundKey firstClickCoords,
-                                     compoundKey secondClickCoords, String color, String enemyColor) {
-        return ((secondPiece != null) &&
-                (firstPiece.getColor() == secondPiece.getColor()) &&
-                (!firstPiece.getMadeFirstMove() && !secondPiece.getMadeFirstMove()) &&
-                (((firstPiece instanceof King) && (secondPiece instanceof Rook)) ||
-                        ((firstPiece instanceof Rook) && (secondPiece instanceof King))) &&
-                !(inCheck(color, enemyColor)));
+    	return isWhiteTurn();
     }
 
     /**
-     * Place a game piece on the board.
+     * A getter for the Zobrist key of the current position (see Zobrist). Two
+     * positions with the same pieces, side to move, castling rights and en passant
+     * square have the same key.
      *
-     * @param secondPiece   a game Piece
-     * @param color         a String, the color of the piece
+     * @return  a long, the 64-bit key
      */
-    private void restorePieceInMap(Piece secondPiece, String color) {
-        if (secondPiece == null)
-            return;
-        pieceMap.get(color).add(secondPiece);
+    public long getZobristKey() {
+        return position.key();
     }
 
     /**
-     * Check if a pawn can be promoted.
+     * Get a copy of the current position, for analysis that should not
+     * disturb the game (see model.Engine).
      *
-     * @param firstPiece        a game Piece, check if pawn
-     * @param secondClickCoords a compoundKey with x,y coords of second click
-     * @return                  a Piece, may become a Queen
+     * @return  a Position, a copy of the board and game state
      */
-    private Piece checkPromotePawn(Piece firstPiece, compoundKey secondClickCoords) {
-        if (firstPiece instanceof Pawn && firstPiece.moveSet().isEmpty()) {
-            firstPiece = new Queen(firstPiece.getRow(), firstPiece.getColumn(), firstPiece.getColor());
-            boardGrid.get(secondClickCoords.i()).set(secondClickCoords.j(), firstPiece);
-            mapPawnToQueen(firstPiece);
-        }
-        return firstPiece;
+    public Position copyPosition() {
+        return new Position(position);
     }
 
     /**
-     * Undo the last move done.
+     * Determine if the player whose turn it is has their king in check.
      *
-     * @param firstClickCoords      a compoundKey with x,y coords of first click
-     * @param secondClickCoords     a compoundKey with x,y coords of second click
-     * @param firstPiece            a game Piece
-     * @param secondPiece           a game Piece
-     * @param enemyColor            a String, color of the player NOT making the move
+     * @return  a boolean, true if in check, else false
      */
-    private void undoMove(compoundKey firstClickCoords, compoundKey secondClickCoords, Piece firstPiece,
-                          Piece secondPiece, String enemyColor) {
-        firstPiece.move(firstClickCoords.i(), (firstClickCoords.j()));
-        boardGrid.get(firstClickCoords.i()).set(firstClickCoords.j(), firstPiece);
-        boardGrid.get(secondClickCoords.i()).set(secondClickCoords.j(), secondPiece);
-        restorePieceInMap(secondPiece, enemyColor);
-
+    public boolean isInCheck() {
+        return position.inCheck(position.sideToMove());
     }
 
     /**
-     * Make the proposed move.
+     * Determine if the player whose turn it is has been checkmated.
      *
-     * @param firstClickCoords      a compoundKey with x,y coords of first click
-     * @param secondClickCoords     a compoundKey with x,y coords of second click
-     * @param firstPiece            a game Piece
-     * @param secondPiece           a game Piece
+     * @return  a boolean, true if Checkmate, else false
      */
-    private void executeMove(compoundKey firstClickCoords, compoundKey secondClickCoords, Piece firstPiece,
-                             Piece secondPiece) {
-        boardGrid.get(firstClickCoords.i()).set(firstClickCoords.j(), null);
-        firstPiece.move(secondClickCoords.i(), secondClickCoords.j());
-        boardGrid.get(secondClickCoords.i()).set(secondClickCoords.j(), firstPiece);
-        // remove second piece from piece map
-        removePiecefromMap(secondPiece);
+    public boolean isCheckMate() {
+        return isInCheck() && checkCheckMate(position.sideToMove());
     }
 
     /**
      * Determine if CheckMate is made.
      *
-     * @param colorToCheck  a String to check enemy color
-     * @param currentColor  a String to check current player color
+     * @param colorToCheck  an int, the color that may be checkmated
      * @return              a boolean, true if Checkmate, else false
      */
-    private boolean checkCheckMate(String colorToCheck, String currentColor) {
+    private boolean checkCheckMate(int colorToCheck) {
         // High level we are checking the opposite player
-        // first need to get all possible moves from the enemy pieces
-        List<completeMove> validMoves = new ArrayList<>();
-        for (Piece piece : pieceMap.get(colorToCheck)) {
-            for (List<Integer> move : piece.moveSet()) {
-                compoundKey startMove = new compoundKey(piece.getRow(), piece.getColumn());
-                compoundKey possibleMove = new compoundKey(move.get(0), move.get(1));
-                Piece firstPiece = boardGrid.get(startMove.i()).get(startMove.j());
-                Piece secondPiece = boardGrid.get(possibleMove.i()).get(possibleMove.j());
-                if (secondPiece != null && firstPiece.getColor() == secondPiece.getColor())
-                    continue;
-                if (piece instanceof Knight || checkPath(startMove, possibleMove))
-                    validMoves.add(new completeMove(startMove, possibleMove));
-            }
-        }
-        // at this point we have every valid move added to the set now we need to check each move and see if we make it
-        // does it take us out of check and if no move does then it's checkmate
-//        boolean inCheck = true;
-        for (completeMove move : validMoves) {
-            // make move
-            compoundKey start = move.start();
-            compoundKey end = move.end();
-            Piece startPiece = boardGrid.get(start.i()).get(start.j());
-            Piece endPiece = boardGrid.get(end.i()).get(end.j());
-            boardGrid.get(start.i()).set(start.j(), null);
-            startPiece.move(end.i(), end.j());
-            boardGrid.get(end.i()).set(end.j(), startPiece);
-            removePiecefromMap(endPiece);
-            // if move takes us out of check return false
-//            if (!inCheck())
-            if (!inCheck(colorToCheck, currentColor)) {
-                startPiece.move(start.i(), start.j());
-                boardGrid.get(start.i()).set(start.j(), startPiece);
-                boardGrid.get(end.i()).set(end.j(), endPiece);
-                restorePieceInMap(endPiece, currentColor);
-                return false;
-            } else {
-                startPiece.move(start.i(), start.j());
-                boardGrid.get(start.i()).set(start.j(), startPiece);
-                boardGrid.get(end.i()).set(end.j(), endPiece);
-                restorePieceInMap(endPiece, currentColor);
-            }
-
-        }
-        return true;
-    }
-
-    /**
-     * See if eney is in check.
-     *
-     * @param color         a String, the current player's color
-     * @param enemyColor    a String, the enemy's color
-     * @return              a boolean, true if in check, else false
-     */
-    private boolean inCheck(String color, String enemyColor) {
-        Piece kingPiece = kingMap.get(color);
-        compoundKey king = new compoundKey(kingPiece.getRow(), kingPiece.getColumn());
-        for (Piece piece : pieceMap.get(enemyColor)) {
-            compoundKey attackPiece = new compoundKey(piece.getRow(), piece.getColumn());
-            if (checkClearPath(attackPiece, king)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Check if a proposed move's path is clear to be made.
-     *
-     * @param attackPiece   a compoundKey, x,y coords of attackPiece
-     * @param king          a compoundKey, x,y coords of king
-     * @return              a boolean, true if path is clear, else false
-     */
-    private boolean checkClearPath(compoundKey attackPiece, compoundKey king) {
-        Piece firstPiece = boardGrid.get(attackPiece.i()).get(attackPiece.j());
-        Set<List<Integer>> possibleMoves = firstPiece.moveSet();
-        if (!possibleMoves.contains(Arrays.asList(king.i(), king.j())))
-            return false;
-        return checkPath(attackPiece, king);
+        // any legal move of the enemy pieces takes them out of check
+        MoveGenerator.generateLegal(position, colorToCheck, moveList);
+        return moveList.size() == 0;
     }
 
     /**
@@ -905,66 +427,69 @@ public class ChessModel extends Observable {
      * @return      a String representing the game piece
      */
     public String getPieceString(int i, int j) {
-        Piece piece = boardGrid.get(i).get(j);
-        if (piece == null)
+        int piece = position.pieceAt(square(i, j));
+        if (piece == EMPTY)
             return "";
-        return piece.getIcon();
-    }
-
-    /**
-     * Map the pawn to the queen.
-     *
-     * @param firstPiece    a game Piece
-     */
-    private void mapPawnToQueen(Piece firstPiece) {
-        String color = firstPiece.getColor() ? white : black;
-        pieceMap.get(color)
-                .removeIf(piece -> piece.getRow() == firstPiece.getRow() && piece.getColumn() == firstPiece.getColumn());
-        pieceMap.get(color).add(firstPiece);
-    }
-
-    /**
-     * This method will remove a piece from the map
-     *
-     * @param piece     a game piece
-     */
-    private void removePiecefromMap(Piece piece) {
-        if (piece == null)
-            return;
-        if (piece.getColor()) {
-            pieceMap.get(white).removeIf(whitePiece -> whitePiece.getRow() == piece.getRow() &&
-                    whitePiece.getColumn() == piece.getColumn());
-        } else {
-            pieceMap.get(black).removeIf(blackPiece -> blackPiece.getRow() == piece.getRow() &&
-                    blackPiece.getColumn() == piece.getColumn());
-        }
+        return ICONS[piece];
     }
 
     /**
      * Get a Set of compoundKeys representing valid moves that can be made from
-     * the x,y coords of the first click.
+     * the x,y coords of the first click. Moves that would leave the player's
+     * own king in check are not included.
      *
      * @param firstClick    a compoundKey, x,y coords of first click
      * @return              a Set of compoundKeys with valid moves
      */
     public Set<compoundKey> getValidMoves(compoundKey firstClick) {
-        Piece firstPiece = boardGrid.get(firstClick.i()).get(firstClick.j());
         Set<compoundKey> moveSet = new HashSet<>();
-        compoundKey startMove = new compoundKey(firstPiece.getRow(), firstPiece.getColumn());
-        for (List<Integer> move : firstPiece.moveSet()) {
-            compoundKey possibleMove = new compoundKey(move.get(0), move.get(1));
-            Piece secondPiece = boardGrid.get(possibleMove.i()).get(possibleMove.j());
-            if (secondPiece != null && firstPiece.getColor() == secondPiece.getColor())
+        int from = toSquare(firstClick);
+        int piece = position.pieceAt(from);
+        if (piece == EMPTY)
+            return moveSet;
+        MoveGenerator.generateLegal(position, colorOf(piece), moveList);
+        for (int i = 0; i < moveList.size(); i++) {
+            int move = moveList.get(i);
+            if (PackedMove.from(move) != from)
                 continue;
-            if (firstPiece instanceof Knight || checkPath(startMove, possibleMove))
-                moveSet.add(possibleMove);
+            // a castle is shown on the rook the king castles with
+            int to = PackedMove.isCastle(move) ? PackedMove.castleRookFrom(move) : PackedMove.to(move);
+            moveSet.add(new compoundKey(row(to), column(to)));
         }
         return moveSet;
-
-
     }
 
+    /**
+     * Build a grid of Piece objects matching the current position. The grid is
+     * a snapshot, changing it does not change the game.
+     *
+     * @return  a List of rows, each a List of Pieces (null for an empty square)
+     */
     public List<List<Piece>> getBoardGrid(){
+        List<List<Piece>> boardGrid = new ArrayList<>();
+        for (int i = 0; i < WIDTH_HEIGHT; i++) {
+            List<Piece> row = new ArrayList<>();
+            for (int j = 0; j < WIDTH_HEIGHT; j++) {
+                int sq = square(i, j);
+                int piece = position.pieceAt(sq);
+                Piece toAdd = null;
+                if (piece != EMPTY) {
+                    boolean isWhite = colorOf(piece) == WHITE;
+                    toAdd = switch (typeOf(piece)) {
+                        case PAWN -> new Pawn(i, j, isWhite);
+                        case KNIGHT -> new Knight(i, j, isWhite);
+                        case BISHOP -> new Bishop(i, j, isWhite);
+                        case ROOK -> new Rook(i, j, isWhite);
+                        case QUEEN -> new Queen(i, j, isWhite);
+                        default -> new King(i, j, isWhite);
+                    };
+                    if (position.hasMoved(sq))
+                        toAdd.move(i, j);
+                }
+                row.add(toAdd);
+            }
+            boardGrid.add(row);
+        }
         return boardGrid;
     }
 
@@ -974,11 +499,5 @@ public class ChessModel extends Observable {
     public record Move(int x, int y, String piece) implements Serializable {
 }
 
-    /**
-     * A way to store the start and end coordinates of a move.
-     */
-    private record completeMove(compoundKey start, compoundKey end) {
-}
 
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,452 @@
+package model.Engine;
+
+import model.Attacks;
+import model.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static model.Position.*;
+
+/**
+ * This class holds the exact result of every position of the endings king and
+ * queen, king and rook, and king and pawn against a lone king: won for the
+ * side with the piece (the strong side) with the distance to mate in plies,
+ * or drawn. The lone king can never win, so one number per position is enough.
+ *
+ * The tables are computed by retrograde analysis, backwards from the mates:
+ * a position with the lone king to move that is mate is lost in 0 plies, a
+ * position with the strong side to move that has a move to a position lost in
+ * n plies is won in n + 1, and a position with the lone king to move is lost
+ * in n + 1 once every move leads to a win, the slowest in n. Each such layer
+ * of positions is found in one parallel pass (fork-join) over the table, and
+ * whatever is never reached is a draw. A pawn that promotes leaves the table,
+ * so the queen and rook tables are computed first and looked up.
+ *
+ * A table is indexed by side to move, strong king, lone king and piece square,
+ * with the strong side as white. Positions with the strong side black are
+ * mirrored to it. The distances are stored in as few bits as the longest one
+ * needs, 0 for a draw or an impossible position, plies + 1 otherwise.
+ *
+ * File layout, big-endian:
+ *
+ *   int    MAGIC
+ *   int    number of tables
+ *   per table:
+ *     int  piece type of the strong side
+ *     int  bits per position
+ *     int  data length in bytes
+ *     byte data, positions packed from the high bit of each byte
+ *
+ * The file is memory-mapped, not read, so opening it is instant.
+ */
+public class Bitbase {
+    // the order the tables are generated in, the pawn's promotions first
+    public static final int[] TYPES = {QUEEN, ROOK, PAWN};
+    public static final int POSITIONS = 2 * 64 * 64 * 64;
+    // the score of a position the Bitbase doesn't cover
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final String FILE_NAME = "kxk.bb";
+    // "KXK1"
+    private static final int MAGIC = 0x4B584B31;
+    private static final int HALF = POSITIONS / 2;
+    // the positions a fork-join task scores without splitting
+    private static final int SPLIT = 1 << 12;
+    private static final int STRONG = 0;
+    private static final int WEAK = 1;
+
+    private final ByteBuffer[] tables = new ByteBuffer[NUM_PIECES / 2];
+    private final int[] bits = new int[NUM_PIECES / 2];
+
+    private Bitbase() {
+    }
+
+    /**
+     * Compute every table on the common fork-join pool.
+     *
+     * @return  the Bitbase, in memory
+     */
+    public static Bitbase generate() {
+        return generate(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compute every table.
+     *
+     * @param pool  the ForkJoinPool to compute on
+     * @return      the Bitbase, in memory
+     */
+    public static Bitbase generate(ForkJoinPool pool) {
+        Bitbase bitbase = new Bitbase();
+        for (int type : TYPES) {
+            byte[] codes = new Generator(type, bitbase, pool).run();
+            int max = 0;
+            for (byte code : codes)
+                max = Math.max(max, code);
+            bitbase.bits[type] = Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+            bitbase.tables[type] = pack(codes, bitbase.bits[type]);
+        }
+        return bitbase;
+    }
+
+    /**
+     * Write the tables to a file that open maps back.
+     *
+     * @param path  the Path to write
+     * @throws IOException if the file can't be written
+     */
+    public void write(Path path) throws IOException {
+        int length = 8;
+        for (int type : TYPES)
+            length += 12 + tables[type].capacity();
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(TYPES.length);
+        for (int type : TYPES) {
+            buffer.putInt(type).putInt(bits[type]).putInt(tables[type].capacity());
+            buffer.put(tables[type].duplicate().clear());
+        }
+        Files.write(path, buffer.array());
+    }
+
+    /**
+     * Map a file written by write.
+     *
+     * @param path  the Path of the file
+     * @return      the Bitbase, on the mapped file
+     * @throws IOException if the file can't be read or is not a bitbase
+     */
+    public static Bitbase open(Path path) throws IOException {
+        ByteBuffer file;
+        // the mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.remaining() < 8 || file.getInt() != MAGIC)
+            throw new IOException("not a bitbase file: " + path);
+        Bitbase bitbase = new Bitbase();
+        int count = file.getInt();
+        for (int i = 0; i < count; i++) {
+            if (file.remaining() < 12)
+                throw new IOException("truncated bitbase file: " + path);
+            int type = file.getInt();
+            int bits = file.getInt();
+            int length = file.getInt();
+            if (type < PAWN || type >= KING || bits < 1 || bits > 9 || length != packedLength(bits)
+                    || file.remaining() < length)
+                throw new IOException("bad bitbase table in " + path);
+            bitbase.bits[type] = bits;
+            bitbase.tables[type] = file.slice(file.position(), length);
+            file.position(file.position() + length);
+        }
+        for (int type : TYPES) {
+            if (bitbase.tables[type] == null)
+                throw new IOException("missing bitbase table in " + path);
+        }
+        return bitbase;
+    }
+
+    /**
+     * Score a position from the tables. A lone king against a knight or a
+     * bishop is a draw too.
+     *
+     * @param position  the Position
+     * @return          an int, MATE minus the plies to mate if the side to move wins, minus that if it
+     *                  loses, DRAW, or UNKNOWN if the position is not a covered ending
+     */
+    public int probe(Position position) {
+        if (position.pieceCount(WHITE) + position.pieceCount(BLACK) != 3 || position.castlingRights() != 0)
+            return UNKNOWN;
+        int strong = position.pieceCount(WHITE) == 2 ? WHITE : BLACK;
+        int piece = NO_SQUARE;
+        for (int i = 0; i < 2; i++) {
+            int sq = position.pieceSquare(strong, i);
+            if (typeOf(position.pieceAt(sq)) != KING)
+                piece = sq;
+        }
+        int type = typeOf(position.pieceAt(piece));
+        if (type == KNIGHT || type == BISHOP)
+            return Search.DRAW;
+        int strongKing = position.kingSquare(strong);
+        int weakKing = position.kingSquare(strong ^ 1);
+        if (strong == BLACK) {
+            strongKing ^= 56;
+            weakKing ^= 56;
+            piece ^= 56;
+        }
+        int side = position.sideToMove() == strong ? STRONG : WEAK;
+        int code = code(type, index(side, strongKing, weakKing, piece));
+        if (code == 0)
+            return Search.DRAW;
+        return side == STRONG ? Search.MATE - (code - 1) : -Search.MATE + (code - 1);
+    }
+
+    /**
+     * a getter for the stored value of a position
+     * @param type  an int, the piece type of the strong side
+     * @param index an int, the index of the position
+     * @return      an int, 0 for a draw, plies to mate + 1 otherwise
+     */
+    int code(int type, int index) {
+        ByteBuffer table = tables[type];
+        int bits = this.bits[type];
+        long bit = (long) index * bits;
+        int pair = ((table.get((int) (bit >>> 3)) & 0xFF) << 8) | (table.get((int) (bit >>> 3) + 1) & 0xFF);
+        return pair >>> (16 - (int) (bit & 7) - bits) & ((1 << bits) - 1);
+    }
+
+    /**
+     * The index of a position, with the strong side as white.
+     *
+     * @param side          an int, STRONG or WEAK to move
+     * @param strongKing    an int, the strong king's square
+     * @param weakKing      an int, the lone king's square
+     * @param piece         an int, the strong piece's square
+     * @return              an int, the index
+     */
+    static int index(int side, int strongKing, int weakKing, int piece) {
+        return side * HALF + (strongKing << 12 | weakKing << 6 | piece);
+    }
+
+    /**
+     * Pack the values of a table into bits per position.
+     *
+     * @param codes an array of bytes, one value per position
+     * @param bits  an int, the bits per position
+     * @return      a ByteBuffer of the packed values
+     */
+    private static ByteBuffer pack(byte[] codes, int bits) {
+        byte[] data = new byte[packedLength(bits)];
+        for (int i = 0; i < codes.length; i++) {
+            long start = (long) i * bits;
+            for (int b = 0; b < bits; b++) {
+                if ((codes[i] >>> (bits - 1 - b) & 1) != 0) {
+                    long bit = start + b;
+                    data[(int) (bit >>> 3)] |= (byte) (0x80 >>> (bit & 7));
+                }
+            }
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    /**
+     * @param bits  an int, the bits per position
+     * @return      an int, the bytes of a packed table, with one to spare for reading in pairs
+     */
+    private static int packedLength(int bits) {
+        return (int) (((long) POSITIONS * bits + 7) / 8) + 1;
+    }
+
+    /**
+     * Generate the tables and write them.
+     *
+     * @param args          the Path to write, FILE_NAME if there is none
+     * @throws IOException  if the file can't be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Path.of(args.length > 0 ? args[0] : FILE_NAME);
+        long start = System.nanoTime();
+        Bitbase bitbase = generate();
+        System.out.printf("generated in %.0f ms on %d threads%n", (System.nanoTime() - start) / 1e6,
+                ForkJoinPool.commonPool().getParallelism());
+        for (int type : TYPES) {
+            int won = 0;
+            int longest = 0;
+            for (int i = 0; i < POSITIONS; i++) {
+                int code = bitbase.code(type, i);
+                won += i < HALF && code > 0 ? 1 : 0;
+                longest = Math.max(longest, code - 1);
+            }
+            System.out.printf("K%sK: %d won with the move, longest mate %d plies, %d bits per position%n",
+                    "PNBRQ".charAt(type), won, longest, bitbase.bits[type]);
+        }
+        bitbase.write(path);
+        System.out.println("wrote " + path + ", " + Files.size(path) + " bytes");
+    }
+
+    /**
+     * This class computes one table, a layer of positions per pass.
+     */
+    private static final class Generator {
+        private final int type;
+        private final Bitbase promotions;
+        private final ForkJoinPool pool;
+        private final byte[] codes = new byte[POSITIONS];
+
+        /**
+         * @param type          an int, the piece type of the strong side
+         * @param promotions    the Bitbase with the queen and rook tables, for the pawn
+         * @param pool          the ForkJoinPool to compute on
+         */
+        Generator(int type, Bitbase promotions, ForkJoinPool pool) {
+            this.type = type;
+            this.promotions = promotions;
+            this.pool = pool;
+        }
+
+        /**
+         * Find the layers until one is empty and no promotion can still lead to a longer mate.
+         *
+         * @return  an array of bytes, 0 for a draw, plies to mate + 1 otherwise
+         */
+        byte[] run() {
+            int longestPromotion = 0;
+            if (type == PAWN) {
+                for (int promotion : new int[]{QUEEN, ROOK}) {
+                    for (int i = 0; i < HALF; i++)
+                        longestPromotion = Math.max(longestPromotion, promotions.code(promotion, HALF + i));
+                }
+            }
+            for (int plies = 0; ; plies++) {
+                int side = plies % 2 == 0 ? WEAK : STRONG;
+                int found = pool.invoke(new Layer(this, plies, side * HALF, side * HALF + HALF));
+                if (found == 0 && plies > longestPromotion)
+                    return codes;
+            }
+        }
+
+        /**
+         * Find whether a position is lost or won in exactly a number of plies.
+         *
+         * @param index an int, the index of a position not known yet
+         * @param plies an int, the plies of the layer
+         * @return      a boolean, true if the position is in the layer
+         */
+        boolean inLayer(int index, int plies) {
+            int side = index / HALF;
+            int strongKing = index >>> 12 & 63;
+            int weakKing = index >>> 6 & 63;
+            int piece = index & 63;
+            if (strongKing == weakKing || strongKing == piece || weakKing == piece
+                    || (Attacks.king(strongKing) & bit(weakKing)) != 0)
+                return false;
+            if (type == PAWN && (row(piece) == 0 || row(piece) == 7))
+                return false;
+            long occupied = bit(strongKing) | bit(weakKing) | bit(piece);
+            boolean check = (attacks(type, piece, occupied) & bit(weakKing)) != 0;
+            return side == WEAK ? weakInLayer(strongKing, weakKing, piece, check, plies)
+                    : !check && strongInLayer(strongKing, weakKing, piece, occupied, plies);
+        }
+
+        /**
+         * The lone king is lost in exactly plies when every move is to a position won by
+         * then, and it can't take the piece.
+         */
+        private boolean weakInLayer(int strongKing, int weakKing, int piece, boolean check, int plies) {
+            long targets = Attacks.king(weakKing) & ~Attacks.king(strongKing);
+            boolean moves = false;
+            for (long t = targets; t != 0; t &= t - 1) {
+                int to = Long.numberOfTrailingZeros(t);
+                if (to == piece)
+                    return false;
+                long occupied = bit(strongKing) | bit(to) | bit(piece);
+                if ((attacks(type, piece, occupied) & bit(to)) != 0)
+                    continue;
+                moves = true;
+                if (codes[index(STRONG, strongKing, to, piece)] == 0)
+                    return false;
+            }
+            // mate is the first layer, stalemate is a draw
+            return moves ? plies > 0 : check && plies == 0;
+        }
+
+        /**
+         * The strong side wins in exactly plies when it has a move to a position lost in plies - 1.
+         */
+        private boolean strongInLayer(int strongKing, int weakKing, int piece, long occupied, int plies) {
+            if (plies == 0)
+                return false;
+            long kingTargets = Attacks.king(strongKing) & ~Attacks.king(weakKing) & ~bit(piece);
+            for (long t = kingTargets; t != 0; t &= t - 1) {
+                if (codes[index(WEAK, Long.numberOfTrailingZeros(t), weakKing, piece)] == plies)
+                    return true;
+            }
+            if (type != PAWN) {
+                long targets = attacks(type, piece, occupied) & ~bit(strongKing) & ~bit(weakKing);
+                for (long t = targets; t != 0; t &= t - 1) {
+                    if (codes[index(WEAK, strongKing, weakKing, Long.numberOfTrailingZeros(t))] == plies)
+                        return true;
+                }
+                return false;
+            }
+            int push = piece - 8;
+            if ((occupied & bit(push)) != 0)
+                return false;
+            if (row(push) == 0) {
+                return promotions.code(QUEEN, index(WEAK, strongKing, weakKing, push)) == plies
+                        || promotions.code(ROOK, index(WEAK, strongKing, weakKing, push)) == plies;
+            }
+            if (codes[index(WEAK, strongKing, weakKing, push)] == plies)
+                return true;
+            int doublePush = piece - 16;
+            return row(piece) == 6 && (occupied & bit(doublePush)) == 0
+                    && codes[index(WEAK, strongKing, weakKing, doublePush)] == plies;
+        }
+
+        /**
+         * @param type      an int, the piece type
+         * @param sq        an int, the piece's square
+         * @param occupied  a long, the occupied squares
+         * @return          a long, the squares a white piece of the type attacks
+         */
+        private static long attacks(int type, int sq, long occupied) {
+            return switch (type) {
+                case PAWN -> Attacks.pawn(WHITE, sq);
+                case ROOK -> Attacks.rook(sq, occupied);
+                default -> Attacks.queen(sq, occupied);
+            };
+        }
+    }
+
+    /**
+     * This class finds one layer of a range of positions, splitting the range
+     * in two until it is small. A layer has one side to move and only reads
+     * the positions of the other, so the tasks can write what they find at
+     * once.
+     */
+    private static final class Layer extends RecursiveTask<Integer> {
+        private static final long serialVersionUID = 1L;
+        private final Generator generator;
+        private final int plies;
+        private final int from;
+        private final int to;
+
+        /**
+         * @param generator the Generator of the table
+         * @param plies     an int, the plies of the layer
+         * @param from      an int, the first index of the range
+         * @param to        an int, the index after the range
+         */
+        Layer(Generator generator, int plies, int from, int to) {
+            this.generator = generator;
+            this.plies = plies;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from > SPLIT) {
+                int middle = (from + to) >>> 1;
+                Layer left = new Layer(generator, plies, from, middle);
+                left.fork();
+                int right = new Layer(generator, plies, middle, to).compute();
+                return left.join() + right;
+            }
+            int found = 0;
+            for (int i = from; i < to; i++) {
+                if (generator.codes[i] == 0 && generator.inLayer(i, plies)) {
+                    generator.codes[i] = (byte) (plies + 1);
+                    found++;
+                }
+            }
+            return found;
+        }
+    }
+}
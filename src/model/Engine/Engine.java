@@ -0,0 +1,472 @@
+package model.Engine;
+
+import model.ChessModel;
+import model.MoveGenerator;
+import model.MoveList;
+import model.PackedMove;
+import model.Position;
+import view.ChessGUIView.compoundKey;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static model.Position.*;
+
+/**
+ * This class lets the computer play a side. It searches a copy of the game's
+ * position (see Search) and answers with the move as the two clicks a player
+ * would make, so the reply can go straight to ChessController.makeMove.
+ *
+ * While the opponent thinks the Engine can ponder: it guesses the reply from
+ * the TranspositionTable and searches the position after it in the background.
+ * If the opponent plays the guess (a ponder hit) the time the background
+ * search ran counts against the next move's budget: if it ran for the whole
+ * budget, or finished, its move is played at once. Otherwise the move is
+ * searched for what is left of the budget, from the table the background
+ * search filled, so it gets through the depths already pondered at once and
+ * goes deeper, and the deeper of the two searches answers. Any other reply (a
+ * miss) cancels the background search.
+ *
+ * Playing on a clock, bestMoveOnClock lets the TimeManager split what is left
+ * into a soft and a hard deadline for the move, and keeps how far the move
+ * went past the hard one.
+ *
+ * With an OpeningBook set, a position found in the book is answered with one
+ * of its book moves, picked at random by weight, without searching.
+ *
+ * In Monte Carlo mode the moves are searched by a MonteCarloSearch on the
+ * same number of threads instead of by alpha-beta, and there is no pondering.
+ */
+public class Engine {
+    public static final int MAX_DEPTH = 64;
+
+    private final TranspositionTable table;
+    private final ParallelSearch search;
+    private Search.Result lastResult;
+    private Thread ponderThread;
+    private volatile Search.Result ponderResult;
+    private int ponderMove = PackedMove.NONE;
+    private long ponderKey;
+    private boolean ponderHit;
+    private int ponderHits;
+    private int ponderMisses;
+    private TimeManager.Budget lastBudget;
+    private long lastOvershootMillis;
+    private long worstOvershootMillis = Long.MIN_VALUE;
+    private OpeningBook book;
+    private final SplittableRandom bookRandom = new SplittableRandom();
+    private MonteCarloSearch monteCarlo;
+
+    /**
+     * The constructor creates an Engine with a table of the default size,
+     * searching on every processor.
+     */
+    public Engine() {
+        this(TranspositionTable.DEFAULT_MEGABYTES, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * The constructor creates an Engine with a table of a given size.
+     *
+     * @param megabytes an int, the size of the TranspositionTable in MB
+     * @param threads   an int, the number of threads to search with (see ParallelSearch)
+     */
+    public Engine(int megabytes, int threads) {
+        this.table = new TranspositionTable(megabytes);
+        this.search = new ParallelSearch(threads, table);
+    }
+
+    /**
+     * Find the best move of the player to move.
+     *
+     * @param model     the ChessModel of the game, it is not changed
+     * @param millis    a long, the time allowed in milliseconds
+     * @return          a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] bestMove(ChessModel model, long millis) {
+        return bestMove(model.copyPosition(), millis);
+    }
+
+    /**
+     * Find the best move in a position, taken from the game beforehand so the
+     * game can go on while it is searched.
+     *
+     * @param position  the Position to search, it is not changed
+     * @param millis    a long, the time allowed in milliseconds
+     * @return          a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] bestMove(Position position, long millis) {
+        lastResult = bookResult(position);
+        Search.Result pondered = lastResult == null ? takePonderResult(position) : null;
+        if (pondered != null && isAnswered(pondered, millis))
+            lastResult = pondered;
+        if (lastResult == null && monteCarlo != null)
+            lastResult = monteCarloResult(position, millis);
+        if (lastResult == null)
+            lastResult = deeper(pondered, search.search(position, MAX_DEPTH, remainingMillis(millis, pondered)));
+        return toClicks(lastResult.move());
+    }
+
+    /**
+     * Find the best move of the player to move, on the time left on their clock.
+     *
+     * @param model             the ChessModel of the game, it is not changed
+     * @param remainingMillis   a long, the time left on the clock of the player to move in milliseconds
+     * @param incrementMillis   a long, the time added to the clock after each move in milliseconds
+     * @return                  a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] bestMoveOnClock(ChessModel model, long remainingMillis, long incrementMillis) {
+        return bestMoveOnClock(model.copyPosition(), remainingMillis, incrementMillis);
+    }
+
+    /**
+     * Find the best move in a position, on the time left on the clock of the
+     * player to move.
+     *
+     * @param position          the Position to search, it is not changed
+     * @param remainingMillis   a long, the time left on the clock of the player to move in milliseconds
+     * @param incrementMillis   a long, the time added to the clock after each move in milliseconds
+     * @return                  a compoundKey array with the first and second click, null if there is no legal move
+     */
+    public compoundKey[] bestMoveOnClock(Position position, long remainingMillis, long incrementMillis) {
+        long start = System.nanoTime();
+        TimeManager.Budget budget = TimeManager.allocate(remainingMillis, incrementMillis);
+        lastResult = bookResult(position);
+        Search.Result pondered = lastResult == null ? takePonderResult(position) : null;
+        if (pondered != null && isAnswered(pondered, budget.softMillis()))
+            lastResult = pondered;
+        // a Monte Carlo search can stop at any playout, so it is given the soft deadline
+        if (lastResult == null && monteCarlo != null)
+            lastResult = monteCarloResult(position, budget.softMillis());
+        if (lastResult == null)
+            lastResult = deeper(pondered, search.search(position, MAX_DEPTH,
+                    remainingMillis(budget.softMillis(), pondered), remainingMillis(budget.hardMillis(), pondered)));
+        lastBudget = budget;
+        lastOvershootMillis = TimeManager.overshootMillis(budget, System.nanoTime() - start);
+        worstOvershootMillis = Math.max(worstOvershootMillis, lastOvershootMillis);
+        return toClicks(lastResult.move());
+    }
+
+    /**
+     * Look the position up in the opening book.
+     *
+     * @param position    the Position to look up
+     * @return            a Search.Result of depth 0 with the book move, null if there is no book or the position is not in it
+     */
+    private Search.Result bookResult(Position position) {
+        if (book == null)
+            return null;
+        long start = System.nanoTime();
+        int move = book.pick(position, bookRandom);
+        if (move == PackedMove.NONE)
+            return null;
+        // the opponent left the book's line or not, the ponder search is of no use now
+        stopPondering();
+        return new Search.Result(move, 0, 0, 0, System.nanoTime() - start, 0);
+    }
+
+    /**
+     * Search the position by Monte Carlo tree search.
+     *
+     * @param position  the Position to search
+     * @param millis    a long, the time allowed in milliseconds
+     * @return          a Search.Result of depth 0 with the most visited move, its win rate as a score and the playouts as nodes
+     */
+    private Search.Result monteCarloResult(Position position, long millis) {
+        MonteCarloSearch.Result result = monteCarlo.search(position, Math.max(1, millis), 0);
+        return new Search.Result(result.move(), result.score(), 0, result.playouts(), result.nanos(), 0);
+    }
+
+    /**
+     * Whether searching a result's position again can't do better: it reached
+     * the deepest depth, or found a mate.
+     *
+     * @param result    the Search.Result
+     * @return          a boolean, true if the search is finished
+     */
+    private static boolean isFinished(Search.Result result) {
+        return result.depth() >= MAX_DEPTH || Math.abs(result.score()) >= Search.MATE_BOUND;
+    }
+
+    /**
+     * Whether a ponder hit answers the move without searching it: the ponder
+     * search is finished, or it already ran for the move's whole budget.
+     *
+     * @param pondered  the Search.Result of the ponder search
+     * @param millis    a long, the time allowed for the move in milliseconds, 0 for no limit
+     * @return          a boolean, true if the ponder search's move is played at once
+     */
+    private static boolean isAnswered(Search.Result pondered, long millis) {
+        return isFinished(pondered) || (millis > 0 && pondered.nanos() / 1_000_000 >= millis);
+    }
+
+    /**
+     * What is left of a move's time once the ponder search's is taken off it.
+     *
+     * @param millis    a long, the time allowed for the move in milliseconds, 0 for no limit
+     * @param pondered  the Search.Result of the ponder search, null if there was no ponder hit
+     * @return          a long, the time left in milliseconds, at least 1 unless there is no limit
+     */
+    private static long remainingMillis(long millis, Search.Result pondered) {
+        if (millis == 0 || pondered == null)
+            return millis;
+        return Math.max(1, millis - pondered.nanos() / 1_000_000);
+    }
+
+    /**
+     * Choose between the ponder search and the search of the move itself.
+     *
+     * @param pondered  the Search.Result of the ponder search, null if there was no ponder hit
+     * @param searched  the Search.Result of the move's own search
+     * @return          the Search.Result that got deeper, the move's own on a tie
+     */
+    private static Search.Result deeper(Search.Result pondered, Search.Result searched) {
+        return pondered != null && pondered.depth() > searched.depth() ? pondered : searched;
+    }
+
+    /**
+     * End pondering before a move is searched. On a ponder hit the background
+     * search's result is kept, and the table it filled speeds up the search of
+     * the move.
+     *
+     * @param position    the Position of the game
+     * @return            the Search.Result of the ponder search on a hit, null otherwise
+     */
+    private Search.Result takePonderResult(Position position) {
+        if (ponderThread == null)
+            return null;
+        boolean hit = ponderHit || position.key() == ponderKey;
+        stopPondering();
+        Search.Result result = ponderResult;
+        return hit && result != null && result.depth() > 0 ? result : null;
+    }
+
+    /**
+     * Start searching the opponent's expected reply in the background. Call it
+     * after this side's move has been played on the model.
+     *
+     * @param model the ChessModel of the game, with the opponent to move, it is not changed
+     * @return      a boolean, true if a reply was guessed and pondering started
+     */
+    public boolean ponder(ChessModel model) {
+        stopPondering();
+        if (monteCarlo != null)
+            return false;
+        Position position = model.copyPosition();
+        int reply = expectedReply(position);
+        if (reply == PackedMove.NONE)
+            return false;
+        position.makeMove(reply);
+        ponderMove = reply;
+        ponderKey = position.key();
+        ponderHit = false;
+        ponderResult = null;
+        ponderThread = new Thread(() -> ponderResult = search.search(position, MAX_DEPTH, 0), "ponder");
+        ponderThread.setDaemon(true);
+        ponderThread.start();
+        return true;
+    }
+
+    /**
+     * Tell the Engine the opponent has moved. On a ponder hit the background
+     * search keeps going until bestMove is called, on a miss it is cancelled.
+     *
+     * @param model the ChessModel of the game, with the opponent's move played
+     */
+    public void opponentMoved(ChessModel model) {
+        if (ponderThread == null)
+            return;
+        if (model.getZobristKey() == ponderKey) {
+            ponderHit = true;
+            ponderHits++;
+        } else {
+            ponderMisses++;
+            stopPondering();
+        }
+    }
+
+    /**
+     * Cancel the background search, if there is one, and wait for it to end.
+     */
+    public void stopPondering() {
+        Thread thread = ponderThread;
+        if (thread == null)
+            return;
+        // the search may not have started yet, so keep asking until the thread ends
+        while (thread.isAlive()) {
+            search.stop();
+            try {
+                thread.join(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        ponderThread = null;
+    }
+
+    /**
+     * a getter for whether a background search is running
+     * @return  a boolean, true while pondering
+     */
+    public boolean isPondering() {
+        return ponderThread != null;
+    }
+
+    /**
+     * a getter for the reply the Engine is pondering on
+     * @return  a compoundKey array with the first and second click, null if it is not pondering
+     */
+    public compoundKey[] ponderMove() {
+        return ponderThread == null ? null : toClicks(ponderMove);
+    }
+
+    /**
+     * a getter for the number of times the opponent played the reply pondered on
+     * @return  an int
+     */
+    public int ponderHits() {
+        return ponderHits;
+    }
+
+    /**
+     * a getter for the number of times the opponent played another reply
+     * @return  an int
+     */
+    public int ponderMisses() {
+        return ponderMisses;
+    }
+
+    /**
+     * Guess the opponent's reply: the best move stored in the table for the
+     * position, if it is legal there.
+     *
+     * @param position  the Position with the opponent to move
+     * @return          an int, the packed move or PackedMove.NONE
+     */
+    private int expectedReply(Position position) {
+        long entry = table.probe(position.key());
+        if (entry == TranspositionTable.NO_ENTRY)
+            return PackedMove.NONE;
+        int move = TranspositionTable.move(entry);
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == move)
+                return move;
+        }
+        return PackedMove.NONE;
+    }
+
+    /**
+     * Play the endings of a bitbase file perfectly (see Bitbase). Without the
+     * file the tables are generated and written to it first.
+     *
+     * @param path  the Path of the bitbase file
+     * @throws IOException if the file can't be read or written
+     */
+    public void loadBitbase(Path path) throws IOException {
+        if (!Files.exists(path))
+            Bitbase.generate().write(path);
+        search.setBitbase(Bitbase.open(path));
+    }
+
+    /**
+     * Evaluate with a neural network loaded from a weights file (see Nnue).
+     *
+     * @param path  the Path of the weights file
+     * @throws IOException if the file can't be read or is not a weights file
+     */
+    public void loadNetwork(Path path) throws IOException {
+        search.setNetwork(Nnue.load(path));
+    }
+
+    /**
+     * Play from an opening book while the game is in it.
+     *
+     * @param book  the OpeningBook, null to stop using one
+     */
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    /**
+     * Search with Monte Carlo tree search instead of alpha-beta, or go back.
+     *
+     * @param on    a boolean, true for Monte Carlo tree search
+     */
+    public void setMonteCarlo(boolean on) {
+        if (on && monteCarlo == null) {
+            stopPondering();
+            monteCarlo = new MonteCarloSearch(search.threads());
+        } else if (!on && monteCarlo != null) {
+            monteCarlo.shutdown();
+            monteCarlo = null;
+        }
+    }
+
+    /**
+     * a getter for whether moves are searched by Monte Carlo tree search
+     * @return  a boolean, true in Monte Carlo mode
+     */
+    public boolean isMonteCarlo() {
+        return monteCarlo != null;
+    }
+
+    /**
+     * a getter for the result of the last search, with its score, depth and node count
+     * @return  a Search.Result, or null if nothing has been searched
+     */
+    public Search.Result lastResult() {
+        return lastResult;
+    }
+
+    /**
+     * a getter for the deadlines of the last move played on a clock
+     * @return  a TimeManager.Budget, or null if no move was played on a clock
+     */
+    public TimeManager.Budget lastBudget() {
+        return lastBudget;
+    }
+
+    /**
+     * a getter for how far the last move played on a clock went past its hard deadline
+     * @return  a long, in milliseconds, negative if the deadline was met
+     */
+    public long lastOvershootMillis() {
+        return lastOvershootMillis;
+    }
+
+    /**
+     * a getter for the largest overshoot of all the moves played on a clock
+     * @return  a long, in milliseconds, negative if every deadline was met, Long.MIN_VALUE if there were none
+     */
+    public long worstOvershootMillis() {
+        return worstOvershootMillis;
+    }
+
+    /**
+     * a getter for the TranspositionTable, with its hit, miss and collision counts
+     * @return  the TranspositionTable shared by this Engine's searches
+     */
+    public TranspositionTable table() {
+        return table;
+    }
+
+    /**
+     * Convert a packed move into the clicks that play it. A castle is the king's
+     * move, a promotion always becomes a Queen.
+     *
+     * @param move  an int, the packed move
+     * @return      a compoundKey array with the first and second click, null for PackedMove.NONE
+     */
+    public static compoundKey[] toClicks(int move) {
+        if (move == PackedMove.NONE)
+            return null;
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        return new compoundKey[]{new compoundKey(row(from), column(from)), new compoundKey(row(to), column(to))};
+    }
+}
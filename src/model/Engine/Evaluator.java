@@ -0,0 +1,56 @@
+package model.Engine;
+
+import model.PieceSquare;
+import model.Position;
+
+import static model.Position.*;
+
+/**
+ * This class scores a position for the search. Scores are in centipawns (a
+ * pawn is worth 100) from the point of view of the side to move, so a positive
+ * score means the side to move is ahead.
+ *
+ * The score is the material and piece-square value of the pieces (see
+ * PieceSquare), which the Position keeps up to date as moves are made, so
+ * nothing is counted here. The middlegame and endgame scores are blended by
+ * the game phase, so the weights shift smoothly as pieces come off.
+ *
+ * The pawn structure is scored by a PawnTable, which caches it by pawn key.
+ * A search passes its own table; other callers share one table per thread.
+ */
+public final class Evaluator {
+    // indexed by piece type, the king is never traded so it counts for nothing
+    public static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};
+    private static final ThreadLocal<PawnTable> PAWN_TABLES =
+            ThreadLocal.withInitial(() -> new PawnTable(PawnTable.DEFAULT_KILOBYTES));
+
+    private Evaluator() {
+    }
+
+    /**
+     * Score a position, with the pawn table of the calling thread.
+     *
+     * @param position  the Position to score
+     * @return          an int, the score for the side to move
+     */
+    public static int evaluate(Position position) {
+        return evaluate(position, PAWN_TABLES.get());
+    }
+
+    /**
+     * Score a position by its tapered piece-square and pawn structure score.
+     *
+     * @param position  the Position to score
+     * @param pawns     the PawnTable to find the pawn structure in, used by one thread only
+     * @return          an int, the score for the side to move
+     */
+    public static int evaluate(Position position, PawnTable pawns) {
+        int slot = pawns.probe(position);
+        // a promotion can take the phase past the start of the game
+        int phase = Math.min(position.phase(), PieceSquare.MAX_PHASE);
+        int middlegame = position.middlegameScore() + pawns.middlegame(slot);
+        int endgame = position.endgameScore() + pawns.endgame(slot);
+        int score = (middlegame * phase + endgame * (PieceSquare.MAX_PHASE - phase)) / PieceSquare.MAX_PHASE;
+        return position.sideToMove() == WHITE ? score : -score;
+    }
+}
@@ -0,0 +1,477 @@
+package model.Engine;
+
+import model.ChessModel;
+import model.MoveGenerator;
+import model.MoveList;
+import model.PackedMove;
+import model.Position;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class answers "can the side to move force mate in N moves?" with
+ * proof-number search. Every position has a proof number, the fewest leaves
+ * that must still be shown to be mates to prove it, and a disproof number, the
+ * fewest that must be shown to escape. At the attacker's positions one good
+ * move is enough, so the proof number is the smallest of the children's and
+ * the disproof number their sum; at the defender's positions every reply must
+ * be answered, so it is the other way round. The search always works on the
+ * position that is cheapest to settle, found by following the smallest numbers
+ * down from the root.
+ *
+ * A new position starts at its number of legal moves: a check with two replies
+ * is far closer to a proof than a quiet move with thirty, and a quiet move's
+ * replies count double on top. That is why the search heads straight for
+ * forcing lines. On the attacker's last move only its checks are searched, as
+ * nothing else can mate there.
+ *
+ * The search is the depth-first variant ("df-pn"): instead of a tree it keeps
+ * the numbers in a table, by position and plies left, and only leaves a
+ * subtree once its numbers pass the thresholds set by its parent. The table is
+ * the memory cap, a transposition is settled once, and a full table just
+ * overwrites the older numbers. What is proved stays in the table for the
+ * next solve. The node budget caps the positions searched.
+ *
+ * Mates in 1, 2, ... N moves are tried in turn, so the mate found is the
+ * shortest.
+ *
+ * A MateSolver is used by one thread at a time.
+ */
+public class MateSolver {
+    public static final int DEFAULT_MEGABYTES = 64;
+    public static final long DEFAULT_NODE_BUDGET = 5_000_000;
+    // the answers of solve
+    public static final int MATE = 1;
+    public static final int NO_MATE = 2;
+    public static final int UNKNOWN = 3;
+    // a key and two ints
+    private static final int ENTRY_BYTES = 16;
+    // big enough for any count of positions, small enough to add two without overflow
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    // a quiet move leaves the defender free, so its replies count this many times a check's
+    private static final int QUIET_PROOF = 2;
+    private static final int MAX_PLIES = Search.MAX_PLY - 1;
+    // mixed into the key, the same position with fewer plies left is another question
+    private static final long[] PLIES_LEFT = new long[MAX_PLIES + 1];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x50524F4FL);
+        for (int i = 0; i <= MAX_PLIES; i++)
+            PLIES_LEFT[i] = random.nextLong();
+    }
+
+    private final long nodeBudget;
+    private final long[] keys;
+    private final int[] proofs;
+    private final int[] disproofs;
+    private final int mask;
+    private final MoveList[] lists = new MoveList[MAX_PLIES + 1];
+    private final long[][] childKeys = new long[MAX_PLIES + 1][MoveList.MAX_MOVES];
+    private final MoveList replies = new MoveList();
+    private long nodes;
+    private boolean aborted;
+
+    /**
+     * The constructor creates a solver with the default node budget and memory cap.
+     */
+    public MateSolver() {
+        this(DEFAULT_NODE_BUDGET, DEFAULT_MEGABYTES);
+    }
+
+    /**
+     * The constructor creates a solver.
+     *
+     * @param nodeBudget    a long, the most positions a solve may search, over all the depths it tries
+     * @param megabytes     an int, the size of the table in MB, rounded down to a power of two
+     */
+    public MateSolver(long nodeBudget, int megabytes) {
+        long entries = Long.highestOneBit(Math.max(1, ((long) megabytes << 20) / ENTRY_BYTES));
+        int capacity = (int) Math.min(entries, 1 << 30);
+        this.nodeBudget = nodeBudget;
+        this.keys = new long[capacity];
+        this.proofs = new int[capacity];
+        this.disproofs = new int[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i <= MAX_PLIES; i++)
+            lists[i] = new MoveList();
+    }
+
+    /**
+     * Look for a forced mate in the current position of a game.
+     *
+     * @param model     the ChessModel, it is not changed
+     * @param maxMoves  an int, the most moves of the side to move the mate may take
+     * @return          a Result
+     */
+    public Result solve(ChessModel model, int maxMoves) {
+        return solve(model.copyPosition(), maxMoves);
+    }
+
+    /**
+     * Look for a forced mate by the side to move.
+     *
+     * @param position  the Position, it is not changed
+     * @param maxMoves  an int, the most moves of the side to move the mate may take, at most 63
+     * @return          a Result with the shortest mate, NO_MATE if there is none in maxMoves, or UNKNOWN
+     *                  if the node budget ran out first
+     */
+    public Result solve(Position position, int maxMoves) {
+        if (maxMoves < 1 || 2 * maxMoves - 1 > MAX_PLIES)
+            throw new IllegalArgumentException("a mate must take 1 to " + (MAX_PLIES + 1) / 2 + " moves");
+        long start = System.nanoTime();
+        Position board = new Position(position);
+        nodes = 0;
+        aborted = false;
+        for (int mateIn = 1; mateIn <= maxMoves; mateIn++) {
+            int status = prove(board, 2 * mateIn - 1);
+            if (status == MATE) {
+                int[] line = line(board, 2 * mateIn - 1);
+                if (!aborted)
+                    return new Result(MATE, mateIn, line, nodes, System.nanoTime() - start);
+            }
+            if (aborted)
+                return new Result(UNKNOWN, 0, new int[0], nodes, System.nanoTime() - start);
+        }
+        return new Result(NO_MATE, 0, new int[0], nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * Forget every position. The table doesn't have to be cleared between
+     * solves: a position proved or disproved with so many plies left stays so.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+    }
+
+    /**
+     * Prove or disprove a mate within a number of plies: the attacker is to
+     * move when the plies left are odd, the defender when they are even.
+     *
+     * @param position  the Position, it is left as it was
+     * @param plies     an int, the plies the mate may take
+     * @return          an int, MATE, NO_MATE or UNKNOWN
+     */
+    private int prove(Position position, int plies) {
+        long key = key(position, plies);
+        int slot = slot(key);
+        if (keys[slot] != key)
+            score(position, plies, key);
+        if (proofs[slot(key)] != 0 && disproofs[slot(key)] != 0)
+            search(position, plies, INFINITY, INFINITY);
+        if (aborted)
+            return UNKNOWN;
+        // the root's numbers are the last ones stored
+        slot = slot(key);
+        return keys[slot] != key ? UNKNOWN : proofs[slot] == 0 ? MATE : disproofs[slot] == 0 ? NO_MATE : UNKNOWN;
+    }
+
+    /**
+     * Search a position until its proof number reaches one threshold or its
+     * disproof number the other, then store its numbers.
+     *
+     * @param position  the Position, it is left as it was
+     * @param plies     an int, the plies left, odd for the attacker
+     * @param proofMax  an int, the proof number threshold
+     * @param disproofMax   an int, the disproof number threshold
+     */
+    private void search(Position position, int plies, int proofMax, int disproofMax) {
+        boolean attacker = plies % 2 == 1;
+        MoveList list = lists[plies];
+        long[] children = childKeys[plies];
+        MoveGenerator.generateLegal(position, list);
+        // on the attacker's last move only a check can mate
+        int count = plies == 1 ? keepChecks(position, list) : list.size();
+        // every child is visited, to key and maybe score it
+        nodes += count;
+        if (nodes > nodeBudget) {
+            aborted = true;
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            position.makeMove(list.get(i));
+            children[i] = key(position, plies - 1);
+            if (keys[slot(children[i])] != children[i])
+                score(position, plies - 1, children[i]);
+            position.unmakeMove();
+        }
+        long key = key(position, plies);
+        // at the attacker's positions the proof numbers are the smallest of, at the defender's the disproof numbers
+        int[] smallest = attacker ? proofs : disproofs;
+        int[] summed = attacker ? disproofs : proofs;
+        int smallestMax = attacker ? proofMax : disproofMax;
+        int summedMax = attacker ? disproofMax : proofMax;
+        while (true) {
+            int best = -1;
+            int min = INFINITY;
+            int second = INFINITY;
+            int sum = 0;
+            int bestSummed = 0;
+            for (int i = 0; i < count; i++) {
+                int slot = slot(children[i]);
+                // a child pushed out of the table starts again
+                boolean known = keys[slot] == children[i];
+                int small = known ? smallest[slot] : 1;
+                int summedChild = known ? summed[slot] : 1;
+                if (small < min) {
+                    second = min;
+                    min = small;
+                    best = i;
+                    bestSummed = summedChild;
+                } else if (small < second) {
+                    second = small;
+                }
+                sum = Math.min(INFINITY, sum + summedChild);
+            }
+            if (min >= smallestMax || sum >= summedMax || aborted) {
+                store(key, attacker ? min : sum, attacker ? sum : min);
+                return;
+            }
+            int childSmallestMax = Math.min(smallestMax, second == INFINITY ? INFINITY : second + 1);
+            int childSummedMax = summedMax >= INFINITY ? INFINITY : summedMax - sum + bestSummed;
+            position.makeMove(list.get(best));
+            if (attacker)
+                search(position, plies - 1, childSmallestMax, childSummedMax);
+            else
+                search(position, plies - 1, childSummedMax, childSmallestMax);
+            position.unmakeMove();
+        }
+    }
+
+    /**
+     * Give a new position its numbers: a mate is proved, a stalemate, a
+     * position at the depth limit or an attacker without moves is disproved,
+     * and anything else starts at its number of legal moves, the defender's
+     * counted QUIET_PROOF times if the attacker's move left it out of check.
+     *
+     * @param position  the Position
+     * @param plies     an int, the plies left, odd for the attacker
+     * @param key       a long, its key
+     */
+    private void score(Position position, int plies, long key) {
+        boolean defender = plies % 2 == 0;
+        // at the limit only a check can still be mate
+        if (plies == 0 && !position.inCheck(position.sideToMove())) {
+            store(key, INFINITY, 0);
+            return;
+        }
+        MoveGenerator.generateLegal(position, replies);
+        boolean check = position.inCheck(position.sideToMove());
+        int count = replies.size();
+        if (count == 0 && defender && check)
+            store(key, 0, INFINITY);
+        else if (count == 0 || plies == 0)
+            store(key, INFINITY, 0);
+        else if (defender)
+            store(key, check ? count : QUIET_PROOF * count, 1);
+        else
+            store(key, 1, count);
+    }
+
+    /**
+     * Move the moves that give check to the front of a list.
+     *
+     * @param position  the Position, it is left as it was
+     * @param list      the MoveList of its legal moves, reordered
+     * @return          an int, the number of checks, now the first moves of the list
+     */
+    private static int keepChecks(Position position, MoveList list) {
+        int checks = 0;
+        for (int i = 0; i < list.size(); i++) {
+            position.makeMove(list.get(i));
+            if (position.inCheck(position.sideToMove()))
+                list.swap(i, checks++);
+            position.unmakeMove();
+        }
+        return checks;
+    }
+
+    /**
+     * @param key       a long, the key of a position and plies left
+     * @param proof     an int, its proof number
+     * @param disproof  an int, its disproof number
+     */
+    private void store(long key, int proof, int disproof) {
+        int slot = slot(key);
+        keys[slot] = key;
+        proofs[slot] = proof;
+        disproofs[slot] = disproof;
+    }
+
+    /**
+     * @param key   a long, the key of a position and plies left
+     * @return      an int, its slot in the table
+     */
+    private int slot(long key) {
+        return (int) key & mask;
+    }
+
+    /**
+     * @param position  the Position
+     * @param plies     an int, the plies left
+     * @return          a long, the key of the position with so many plies left
+     */
+    private static long key(Position position, int plies) {
+        return position.key() ^ PLIES_LEFT[plies];
+    }
+
+    /**
+     * Follow a proved mate: the attacker's first move that still mates in
+     * time, and the defender's reply that holds out the longest.
+     *
+     * @param position  the Position, with the attacker to move, it is left as it was
+     * @param plies     an int, the plies of the mate
+     * @return          an int array, the packed moves of the main line
+     */
+    private int[] line(Position position, int plies) {
+        int[] line = new int[plies];
+        int length = 0;
+        MoveList moves = new MoveList();
+        while (!aborted) {
+            MoveGenerator.generateLegal(position, moves);
+            int attack = PackedMove.NONE;
+            for (int i = 0; i < moves.size() && attack == PackedMove.NONE; i++) {
+                position.makeMove(moves.get(i));
+                if (prove(position, plies - 1) == MATE)
+                    attack = moves.get(i);
+                position.unmakeMove();
+            }
+            if (attack == PackedMove.NONE)
+                break;
+            line[length++] = attack;
+            position.makeMove(attack);
+            MoveGenerator.generateLegal(position, moves);
+            if (moves.size() == 0)
+                break;
+            int defense = PackedMove.NONE;
+            int longest = 0;
+            for (int i = 0; i < moves.size(); i++) {
+                position.makeMove(moves.get(i));
+                int mateIn = 1;
+                while (2 * mateIn - 1 < plies - 2 && prove(position, 2 * mateIn - 1) != MATE && !aborted)
+                    mateIn++;
+                position.unmakeMove();
+                if (2 * mateIn - 1 > longest) {
+                    longest = 2 * mateIn - 1;
+                    defense = moves.get(i);
+                }
+            }
+            line[length++] = defense;
+            position.makeMove(defense);
+            plies = longest;
+        }
+        for (int i = 0; i < length; i++)
+            position.unmakeMove();
+        return Arrays.copyOf(line, length);
+    }
+
+    /**
+     * Compare the solver with a plain alpha-beta mate search: the attacker
+     * needs one move that mates, the defender one reply that doesn't, both
+     * tried in generation order down to the full depth.
+     *
+     * @param args  FEN (quoted) and the most moves of the mate (default 3)
+     */
+    public static void main(String[] args) {
+        Position position = Position.fromFen(args[0]);
+        int maxMoves = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        MateSolver solver = new MateSolver();
+        // the first run of each warms the JIT up
+        Result result = solver.solve(position, maxMoves);
+        solver.clear();
+        result = solver.solve(position, maxMoves);
+        System.out.println("proof-number search: " + result);
+        if (result.status() != MATE)
+            return;
+        long[] plainNodes = new long[1];
+        long nanos = 0;
+        boolean mate = false;
+        for (int run = 0; run < 2; run++) {
+            plainNodes[0] = 0;
+            long start = System.nanoTime();
+            mate = attackerMates(new Position(position), 2 * result.mateIn() - 1, new MoveList[2 * maxMoves],
+                    plainNodes);
+            nanos = System.nanoTime() - start;
+        }
+        System.out.printf("alpha-beta: mate in %d %s (%d nodes, %.1f ms)%n", result.mateIn(), mate ? "found" : "missed",
+                plainNodes[0], nanos / 1e6);
+    }
+
+    /**
+     * @param position  the Position, with the attacker to move, it is left as it was
+     * @param plies     an int, the plies the mate may take
+     * @param lists     a MoveList per ply, created as needed
+     * @param nodes     a long array, the positions visited so far in its first element
+     * @return          a boolean, true if the attacker mates within plies
+     */
+    private static boolean attackerMates(Position position, int plies, MoveList[] lists, long[] nodes) {
+        MoveList list = lists[plies] == null ? lists[plies] = new MoveList() : lists[plies];
+        MoveGenerator.generateLegal(position, list);
+        for (int i = 0; i < list.size(); i++) {
+            nodes[0]++;
+            position.makeMove(list.get(i));
+            boolean mate = defenderMated(position, plies - 1, lists, nodes);
+            position.unmakeMove();
+            if (mate)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param position  the Position, with the defender to move, it is left as it was
+     * @param plies     an int, the plies the mate may still take
+     * @param lists     a MoveList per ply, created as needed
+     * @param nodes     a long array, the positions visited so far in its first element
+     * @return          a boolean, true if every reply is mated within plies
+     */
+    private static boolean defenderMated(Position position, int plies, MoveList[] lists, long[] nodes) {
+        MoveList list = lists[plies] == null ? lists[plies] = new MoveList() : lists[plies];
+        MoveGenerator.generateLegal(position, list);
+        if (list.size() == 0)
+            return position.inCheck(position.sideToMove());
+        if (plies == 0)
+            return false;
+        for (int i = 0; i < list.size(); i++) {
+            nodes[0]++;
+            position.makeMove(list.get(i));
+            boolean mate = attackerMates(position, plies - 1, lists, nodes);
+            position.unmakeMove();
+            if (!mate)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * The answer of a solve.
+     *
+     * @param status    an int, MATE, NO_MATE or UNKNOWN
+     * @param mateIn    an int, the moves of the mate, 0 if there is none
+     * @param line      an int array, the packed moves of the main line, empty if there is no mate
+     * @param nodes     a long, the positions visited
+     * @param nanos     a long, the time taken in nanoseconds
+     */
+    public record Result(int status, int mateIn, int[] line, long nodes, long nanos) {
+
+        /**
+         * @return  an int, the first move of the mate, PackedMove.NONE if there is none
+         */
+        public int move() {
+            return line.length == 0 ? PackedMove.NONE : line[0];
+        }
+
+        /**
+         * @return  a String describing the result
+         */
+        @Override
+        public String toString() {
+            StringBuilder moves = new StringBuilder();
+            for (int m : line)
+                moves.append(' ').append(PackedMove.toString(m));
+            String answer = status == MATE ? "mate in " + mateIn + ":" + moves
+                    : status == NO_MATE ? "no mate" : "unknown";
+            return String.format("%s (%d nodes, %.1f ms)", answer, nodes, nanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package model.Engine;
+
+import model.ChessModel;
+import model.MoveGenerator;
+import model.MoveList;
+import model.PackedMove;
+import model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * This class searches a position by Monte Carlo tree search, as an
+ * alternative to the alpha-beta Search. It grows a tree of the positions
+ * reached, one playout at a time:
+ *
+ *   select    from the root, step to the child with the best UCT value (its
+ *             average score plus a bonus for being visited rarely)
+ *   expand    at the second visit of a leaf, give it a child per legal move
+ *   play out  from the leaf, play a few random legal moves and score the
+ *             position reached with the Evaluator as an expected game score
+ *   back up   add the score to every node on the way, for the side that
+ *             moved into it
+ *
+ * The move played is the root's most visited child. A playout allocates
+ * nothing: every worker plays out on its own Position with makeMove and
+ * unmakeMove and one MoveList per ply. Only expanding allocates nodes, and
+ * that stops when the tree reaches its memory cap.
+ *
+ * The workers share one tree (tree parallelism). A node's visits and score
+ * are updated atomically, so no lock is held while descending. To keep the
+ * workers from all following the same path, a worker counts its visit to a
+ * node as soon as it steps in, while the score only arrives at the back up: until
+ * then the visit counts as a loss (a "virtual loss") and makes the node look
+ * worse to the others. Expanding a node is the only step done under its lock.
+ */
+public class MonteCarloSearch {
+    public static final int DEFAULT_ROLLOUT_PLIES = 4;
+    public static final int DEFAULT_MEGABYTES = 64;
+    // a node's score is in thousandths of a point per visit: a win is SCALE, a draw half of it
+    private static final int SCALE = 1000;
+    private static final int DRAW = SCALE / 2;
+    // the weight of UCT's bonus for rarely visited children, sqrt(2) in theory
+    private static final double EXPLORATION = 1.0;
+    // a leaf is only played out from on its first visit, expanded on the next
+    private static final int EXPAND_VISITS = 2;
+    // a 400 centipawn lead is worth 10 to 1 odds, as in the Elo formula
+    private static final double ODDS_CENTIPAWNS = 400;
+    // a rough size of a Node with its slot in the parent's array
+    private static final int NODE_BYTES = 48;
+    private static final int CHECK_INTERVAL = 255;
+    private static final int NOT_TERMINAL = -1;
+
+    private final int threads;
+    private final int rolloutPlies;
+    private final int maxNodes;
+    private final Worker[] workers;
+    private final ExecutorService helpers;
+    private final AtomicInteger tickets = new AtomicInteger();
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private volatile boolean stopped;
+    private volatile long deadline;
+    private volatile int maxPlayouts;
+
+    /**
+     * The result of a search.
+     *
+     * @param move      an int, the packed move of the most visited child, PackedMove.NONE if there is no legal move
+     * @param winRate   a double, the move's average score for the side to move, 0 to 1
+     * @param playouts  an int, the playouts of all threads
+     * @param depth     an int, the deepest node of the tree
+     * @param nodes     an int, the nodes in the tree
+     * @param nanos     a long, the time taken in nanoseconds
+     */
+    public record Result(int move, double winRate, int playouts, int depth, int nodes, long nanos) {
+
+        /**
+         * @return  a double, playouts per second
+         */
+        public double playoutsPerSecond() {
+            return playouts * 1e9 / Math.max(1, nanos);
+        }
+
+        /**
+         * @return  an int, the win rate as a score in centipawns, as the alpha-beta Search would give
+         */
+        public int score() {
+            return centipawns(winRate);
+        }
+
+        /**
+         * @return  a String describing the result
+         */
+        @Override
+        public String toString() {
+            return String.format("%s win rate %.3f depth %d nodes %d playouts %d (%.0f playouts/s)",
+                    PackedMove.toString(move), winRate, depth, nodes, playouts, playoutsPerSecond());
+        }
+    }
+
+    /**
+     * The constructor creates a search with the default rollout length and tree size.
+     *
+     * @param threads   an int, the number of threads searching, at least 1
+     */
+    public MonteCarloSearch(int threads) {
+        this(threads, DEFAULT_ROLLOUT_PLIES, DEFAULT_MEGABYTES);
+    }
+
+    /**
+     * The constructor starts the helper threads.
+     *
+     * @param threads       an int, the number of threads searching, at least 1
+     * @param rolloutPlies  an int, the random moves played out before the Evaluator scores, 0 to score the leaf
+     * @param megabytes     an int, about the most memory the tree may take in MB
+     */
+    public MonteCarloSearch(int threads, int rolloutPlies, int megabytes) {
+        if (threads < 1)
+            throw new IllegalArgumentException("a search needs at least 1 thread");
+        this.threads = threads;
+        this.rolloutPlies = rolloutPlies;
+        this.maxNodes = (int) Math.min(Integer.MAX_VALUE, (long) megabytes * (1 << 20) / NODE_BYTES);
+        this.workers = new Worker[threads];
+        SplittableRandom random = new SplittableRandom();
+        for (int i = 0; i < threads; i++)
+            workers[i] = new Worker(random.split());
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "monte-carlo-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Search the current position of a game.
+     *
+     * @param model     the ChessModel to search, it is not changed
+     * @param millis    a long, the time allowed in milliseconds, 0 for no limit
+     * @return          the Result
+     */
+    public Result search(ChessModel model, long millis) {
+        return search(model.copyPosition(), millis, 0);
+    }
+
+    /**
+     * Search a position on all threads until the time or the playouts run out.
+     *
+     * @param position      the Position to search, it is not changed
+     * @param millis        a long, the time allowed in milliseconds, 0 for no limit
+     * @param maxPlayouts   an int, the playouts allowed, 0 for no limit
+     * @return              the Result
+     */
+    public Result search(Position position, long millis, int maxPlayouts) {
+        if (millis <= 0 && maxPlayouts <= 0)
+            throw new IllegalArgumentException("a search needs a time or a playout limit");
+        long start = System.nanoTime();
+        MoveList legal = new MoveList();
+        MoveGenerator.generateLegal(position, legal);
+        if (legal.size() == 0)
+            return new Result(PackedMove.NONE, 0, 0, 0, 0, System.nanoTime() - start);
+
+        Node root = new Node(PackedMove.NONE);
+        tickets.set(0);
+        nodeCount.set(1);
+        this.maxPlayouts = maxPlayouts > 0 ? maxPlayouts : Integer.MAX_VALUE;
+        deadline = millis > 0 ? start + millis * 1_000_000 : Long.MAX_VALUE;
+        stopped = false;
+        List<Future<?>> futures = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            Worker helper = workers[i];
+            helper.reset(position);
+            futures.add(helpers.submit(() -> helper.run(root)));
+        }
+        workers[0].reset(position);
+        workers[0].run(root);
+        stopped = true;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        Node best = null;
+        Node[] children = root.children;
+        for (int i = 0; children != null && i < children.length; i++) {
+            if (best == null || children[i].visits > best.visits)
+                best = children[i];
+        }
+        int depth = 0;
+        for (Worker worker : workers)
+            depth = Math.max(depth, worker.maxDepth);
+        long nanos = System.nanoTime() - start;
+        // a search too short to expand the root still answers with a legal move
+        if (best == null || best.visits == 0)
+            return new Result(legal.get(0), 0.5, root.visits, depth, nodeCount.get(), nanos);
+        return new Result(best.move, best.score / ((double) best.visits * SCALE), root.visits, depth,
+                nodeCount.get(), nanos);
+    }
+
+    /**
+     * Stop the search on every thread. It answers with the tree grown so far.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * a getter for the number of threads searching
+     * @return  an int
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Stop the helper threads. The MonteCarloSearch can't be used afterwards.
+     */
+    public void shutdown() {
+        if (helpers != null)
+            helpers.shutdownNow();
+    }
+
+    /**
+     * Turn an expected game score into a score in centipawns.
+     *
+     * @param winRate   a double, the expected score of the side to move, 0 to 1
+     * @return          an int, the score in centipawns, short of the mate scores
+     */
+    public static int centipawns(double winRate) {
+        double rate = Math.min(Math.max(winRate, 1e-6), 1 - 1e-6);
+        double score = ODDS_CENTIPAWNS * Math.log10(rate / (1 - rate));
+        return (int) Math.max(-Search.MATE_BOUND + 1, Math.min(Search.MATE_BOUND - 1, Math.round(score)));
+    }
+
+    /**
+     * Turn a score in centipawns into an expected game score.
+     *
+     * @param centipawns    an int, the score of the side to move
+     * @return              an int, the expected score of the side to move, 0 to SCALE
+     */
+    private static int expectedScore(int centipawns) {
+        return (int) Math.round(SCALE / (1 + Math.pow(10, -centipawns / ODDS_CENTIPAWNS)));
+    }
+
+    /**
+     * A position of the tree, reached by its move from the parent. The visits
+     * and the score are for the side that played the move.
+     */
+    private static final class Node {
+        private static final AtomicIntegerFieldUpdater<Node> VISITS =
+                AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+        private static final AtomicLongFieldUpdater<Node> SCORE =
+                AtomicLongFieldUpdater.newUpdater(Node.class, "score");
+
+        private final int move;
+        private volatile int visits;
+        private volatile long score;
+        private volatile Node[] children;
+        // the score of the side to move once the node is known to end the game
+        private volatile int terminal = NOT_TERMINAL;
+
+        private Node(int move) {
+            this.move = move;
+        }
+    }
+
+    /**
+     * The playouts of one thread, with its own copy of the position.
+     */
+    private final class Worker {
+        private final SplittableRandom random;
+        private final PawnTable pawns = new PawnTable(PawnTable.DEFAULT_KILOBYTES);
+        private final MoveList[] lists = new MoveList[Search.MAX_PLY + 1];
+        private final Node[] path = new Node[Search.MAX_PLY + 1];
+        private Position position;
+        private int maxDepth;
+
+        private Worker(SplittableRandom random) {
+            this.random = random;
+            for (int i = 0; i < lists.length; i++)
+                lists[i] = new MoveList();
+        }
+
+        /**
+         * Start a new search.
+         *
+         * @param root  the Position at the root, copied
+         */
+        private void reset(Position root) {
+            position = new Position(root);
+            maxDepth = 0;
+        }
+
+        /**
+         * Play out until the search is stopped.
+         *
+         * @param root  the root Node
+         */
+        private void run(Node root) {
+            for (int count = 1; !stopped; count++) {
+                if (tickets.getAndIncrement() >= maxPlayouts
+                        || ((count & CHECK_INTERVAL) == 0 && System.nanoTime() > deadline)) {
+                    stopped = true;
+                    break;
+                }
+                playout(root);
+            }
+        }
+
+        /**
+         * One playout: select a leaf, expand it, play out from it and back up the score.
+         *
+         * @param root  the root Node
+         */
+        private void playout(Node root) {
+            Node node = root;
+            Node.VISITS.incrementAndGet(root);
+            path[0] = root;
+            int depth = 0;
+            // the score of the side to move at the leaf
+            int value;
+            while (true) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node.terminal != NOT_TERMINAL) {
+                        value = node.terminal;
+                        break;
+                    }
+                    if (node.visits < EXPAND_VISITS || depth == Search.MAX_PLY - rolloutPlies
+                            || nodeCount.get() >= maxNodes) {
+                        value = rollout(depth);
+                        break;
+                    }
+                    children = expand(node, depth);
+                    if (children == null) {
+                        value = node.terminal;
+                        break;
+                    }
+                }
+                node = select(node, children);
+                // the virtual loss: the visit counts now, its score only at the back up
+                Node.VISITS.incrementAndGet(node);
+                position.makeMove(node.move);
+                path[++depth] = node;
+            }
+            maxDepth = Math.max(maxDepth, depth);
+            for (int i = depth; i >= 0; i--) {
+                // the node's score is for the side that moved into it
+                value = SCALE - value;
+                Node.SCORE.addAndGet(path[i], value);
+                if (i > 0)
+                    position.unmakeMove();
+            }
+        }
+
+        /**
+         * Give a node a child per legal move, or mark it as the end of the game.
+         *
+         * @param node  the Node, its position is the worker's
+         * @param depth an int, the node's depth in the tree
+         * @return      the Node array of its children, null if the game is over
+         */
+        private Node[] expand(Node node, int depth) {
+            if (position.isRepetition() || position.halfmoveClock() >= 100) {
+                node.terminal = DRAW;
+                return null;
+            }
+            MoveList list = lists[depth];
+            MoveGenerator.generateLegal(position, list);
+            if (list.size() == 0) {
+                node.terminal = position.inCheck(position.sideToMove()) ? 0 : DRAW;
+                return null;
+            }
+            synchronized (node) {
+                // another worker may have expanded it while this one generated the moves
+                if (node.children == null) {
+                    Node[] children = new Node[list.size()];
+                    for (int i = 0; i < children.length; i++)
+                        children[i] = new Node(list.get(i));
+                    nodeCount.addAndGet(children.length);
+                    node.children = children;
+                }
+                return node.children;
+            }
+        }
+
+        /**
+         * Choose the child with the best UCT value. Unvisited children go first.
+         *
+         * @param parent    the Node
+         * @param children  the Node array of its children
+         * @return          the chosen child Node
+         */
+        private Node select(Node parent, Node[] children) {
+            double logVisits = Math.log(Math.max(1, parent.visits));
+            Node best = children[0];
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                int visits = child.visits;
+                if (visits == 0)
+                    return child;
+                double value = child.score / ((double) visits * SCALE)
+                        + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Play random legal moves from the leaf and score where they end.
+         *
+         * @param depth an int, the leaf's depth in the tree
+         * @return      an int, the expected score of the side to move at the leaf, 0 to SCALE
+         */
+        private int rollout(int depth) {
+            int played = 0;
+            int value;
+            while (true) {
+                if (position.isRepetition() || position.halfmoveClock() >= 100) {
+                    value = DRAW;
+                    break;
+                }
+                MoveList list = lists[depth + played];
+                MoveGenerator.generateLegal(position, list);
+                if (list.size() == 0) {
+                    value = position.inCheck(position.sideToMove()) ? 0 : DRAW;
+                    break;
+                }
+                if (played == rolloutPlies) {
+                    value = expectedScore(Evaluator.evaluate(position, pawns));
+                    break;
+                }
+                position.makeMove(list.get(random.nextInt(list.size())));
+                played++;
+            }
+            for (int i = 0; i < played; i++)
+                position.unmakeMove();
+            return played % 2 == 0 ? value : SCALE - value;
+        }
+    }
+
+    /**
+     * Measure how the playouts scale: every thread count searches the same
+     * position for the same time. One search runs first, so the JIT has
+     * compiled the playouts before the clock starts.
+     *
+     * @param position      the Position to search
+     * @param millis        a long, the time of each search in milliseconds
+     * @param threadCounts  the numbers of threads to try
+     * @return              the Result of each thread count, by thread count
+     */
+    public static Map<Integer, Result> scaling(Position position, long millis, int[] threadCounts) {
+        Map<Integer, Result> results = new TreeMap<>();
+        new MonteCarloSearch(1).search(position, millis, 0);
+        for (int threadCount : threadCounts) {
+            MonteCarloSearch search = new MonteCarloSearch(threadCount);
+            results.put(threadCount, search.search(position, millis, 0));
+            search.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Print the scaling table from the command line: playouts per second for
+     * 1, 2, 4, 8 and 16 threads.
+     *
+     * @param args  FEN (quoted, default the start position) and milliseconds per search (default 2000)
+     */
+    public static void main(String[] args) {
+        String fen = args.length > 0 ? args[0] : Perft.START_FEN;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+        System.out.printf("%d processors, %d ms%n", Runtime.getRuntime().availableProcessors(), millis);
+        System.out.printf("%8s %12s %14s %8s %8s %8s%n", "threads", "playouts", "playouts/s", "speedup", "depth",
+                "move");
+        Map<Integer, Result> results = scaling(Position.fromFen(fen), millis, new int[]{1, 2, 4, 8, 16});
+        double single = results.get(1).playoutsPerSecond();
+        results.forEach((threadCount, result) -> System.out.printf("%8d %12d %14.0f %8.2f %8d %8s%n", threadCount,
+                result.playouts(), result.playoutsPerSecond(), result.playoutsPerSecond() / single, result.depth(),
+                PackedMove.toString(result.move())));
+    }
+}
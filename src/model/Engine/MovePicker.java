@@ -0,0 +1,165 @@
+package model.Engine;
+
+import model.MoveList;
+import model.PackedMove;
+import model.Position;
+
+import static model.Position.*;
+
+/**
+ * This class hands out the moves of a position in the order most likely to
+ * cause a beta cutoff, in stages:
+ *
+ *   1. the move stored in the TranspositionTable
+ *   2. captures and Queen promotions, most valuable victim first and, for the
+ *      same victim, least valuable attacker first (MVV-LVA)
+ *   3. the killer moves, quiet moves that caused a cutoff at the same ply in
+ *      another branch
+ *   4. the other moves, by their history score
+ *
+ * Each stage is only sorted when it is reached, and only as far as moves are
+ * taken from it, so a cutoff on the first move costs almost no sorting. The
+ * moves come from a MoveList of legal moves that the picker reorders in place.
+ *
+ * A MovePicker is reused: a Search keeps one per ply and calls init at every node.
+ */
+public class MovePicker {
+    private static final int TABLE_MOVE = 0;
+    private static final int CAPTURES = 1;
+    private static final int KILLERS = 2;
+    private static final int QUIETS = 3;
+    private static final int DONE = 4;
+
+    private final int[] scores = new int[MoveList.MAX_MOVES];
+    private MoveList list;
+    private int[][] history;
+    private int stage;
+    // the next move to hand out, and the end of the current stage
+    private int next;
+    private int stageEnd;
+    // where each stage starts in the list
+    private int capturesStart;
+    private int killersStart;
+    private int quietsStart;
+
+    /**
+     * Prepare to hand out the moves of a node.
+     *
+     * @param position  the Position the moves were generated for
+     * @param list      the MoveList of legal moves, reordered in place
+     * @param tableMove an int, the move from the TranspositionTable or PackedMove.NONE
+     * @param killer1   an int, the newest killer move of this ply or PackedMove.NONE
+     * @param killer2   an int, the older killer move of this ply or PackedMove.NONE
+     * @param history   the history scores of the side to move, by from and to square
+     */
+    public void init(Position position, MoveList list, int tableMove, int killer1, int killer2, int[][] history) {
+        this.list = list;
+        this.history = history;
+        int front = moveToFront(list, tableMove, 0);
+        capturesStart = front;
+        for (int i = front; i < list.size(); i++) {
+            int move = list.get(i);
+            if (isNoisy(move)) {
+                list.swap(front, i);
+                scores[front++] = mvvLva(position, move);
+            }
+        }
+        killersStart = front;
+        if (killer1 != tableMove)
+            front = moveToFront(list, killer1, front);
+        if (killer2 != tableMove)
+            front = moveToFront(list, killer2, front);
+        quietsStart = front;
+        stage = TABLE_MOVE;
+        next = 0;
+        stageEnd = capturesStart;
+    }
+
+    /**
+     * a getter for the next move
+     * @return  an int, the next packed move or PackedMove.NONE when all have been handed out
+     */
+    public int next() {
+        while (next == stageEnd) {
+            if (++stage == DONE)
+                return PackedMove.NONE;
+            stageEnd = switch (stage) {
+                case CAPTURES -> killersStart;
+                case KILLERS -> quietsStart;
+                default -> list.size();
+            };
+            if (stage == QUIETS) {
+                for (int i = quietsStart; i < stageEnd; i++) {
+                    int move = list.get(i);
+                    scores[i] = history[PackedMove.from(move)][PackedMove.to(move)];
+                }
+            }
+        }
+        if (stage == CAPTURES || stage == QUIETS)
+            selectBest();
+        return list.get(next++);
+    }
+
+    /**
+     * Check whether a move is searched with the captures: a capture or a Queen
+     * promotion. Killers and history only hold the other, quiet, moves.
+     *
+     * @param move  an int, the packed move
+     * @return      a boolean, true if the move changes the material on the board
+     */
+    public static boolean isNoisy(int move) {
+        return PackedMove.isCapture(move) || PackedMove.promotion(move) == QUEEN;
+    }
+
+    /**
+     * Score a capture: the victim's value counts far more than the attacker's,
+     * so every capture of a Queen comes before any capture of a Rook.
+     *
+     * @param position  the Position before the move
+     * @param move      an int, the packed move
+     * @return          an int, a higher score for a more promising capture
+     */
+    public static int mvvLva(Position position, int move) {
+        int victim = PackedMove.isEnPassant(move) ? PAWN
+                : PackedMove.isCapture(move) ? typeOf(position.pieceAt(PackedMove.to(move))) : EMPTY;
+        int score = (victim + 1) * 8 - typeOf(position.pieceAt(PackedMove.from(move)));
+        return PackedMove.isPromotion(move) ? score + PackedMove.promotion(move) * 8 : score;
+    }
+
+    /**
+     * Swap the best scored move left in the stage to the next position.
+     */
+    private void selectBest() {
+        int best = next;
+        for (int i = next + 1; i < stageEnd; i++) {
+            if (scores[i] > scores[best])
+                best = i;
+        }
+        if (best != next) {
+            list.swap(next, best);
+            int score = scores[next];
+            scores[next] = scores[best];
+            scores[best] = score;
+        }
+    }
+
+    /**
+     * Move a move, if it is in the list past an index, to that index.
+     *
+     * @param list  the MoveList to reorder
+     * @param move  an int, the packed move to find
+     * @param front an int, the index to move it to
+     * @return      an int, the index after the moved move, or front if it was not found
+     */
+    private static int moveToFront(MoveList list, int move, int front) {
+        if (move == PackedMove.NONE)
+            return front;
+        for (int i = front; i < list.size(); i++) {
+            if (list.get(i) == move) {
+                list.swap(front, i);
+                return front + 1;
+            }
+        }
+        return front;
+    }
+}
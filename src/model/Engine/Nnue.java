@@ -0,0 +1,324 @@
+package model.Engine;
+
+import model.Position;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+import static model.Position.*;
+
+/**
+ * This class is a small efficiently updatable neural network ("NNUE") that
+ * scores a position. Every piece on a square is one of 768 input features. The
+ * features feed a hidden layer twice, once seen from white's side and once from
+ * black's (colors swapped and the board mirrored), and the two hidden layers
+ * feed a single output, with the side to move's layer first.
+ *
+ * The hidden layer sums ("accumulators") only change by a few weight rows per
+ * move, so they are updated incrementally (see NnueAccumulator) instead of
+ * being computed from all the pieces at every node. Everything is 16-bit
+ * integers: hidden values are clipped to 0..QA before the output layer, and the
+ * output is scaled back to centipawns.
+ *
+ * The arithmetic runs on the Vector API (jdk.incubator.vector) when the JVM is
+ * started with --add-modules jdk.incubator.vector, and on plain loops
+ * otherwise. Both give exactly the same scores.
+ *
+ * Weights file layout, little-endian:
+ *
+ *   int    MAGIC
+ *   int    hidden layer size, a multiple of 32
+ *   short  feature weights, 768 rows of hidden values, row = piece * 64 + square from white's side
+ *   short  hidden biases, hidden values
+ *   short  output weights, 2 * hidden values, the side to move's first
+ *   short  output bias
+ */
+public class Nnue {
+    public static final int INPUTS = 768;
+    public static final int DEFAULT_HIDDEN = 256;
+    // the hidden clip, the output weight scale and the centipawn scale the network was trained with
+    public static final int QA = 255;
+    public static final int QB = 64;
+    public static final int SCALE = 400;
+    // "NNUE"
+    private static final int MAGIC = 0x4E4E5545;
+    // the widest vector is 512 bits, 32 shorts
+    private static final int LANES = 32;
+
+    private final int hidden;
+    private final short[] featureWeights;
+    private final short[] hiddenBiases;
+    private final short[] outputWeights;
+    private final int outputBias;
+    private final Kernel kernel;
+
+    /**
+     * The constructor takes the weights and the kernel to compute with.
+     *
+     * @param hidden            an int, the hidden layer size
+     * @param featureWeights    the feature weights
+     * @param hiddenBiases      the hidden biases
+     * @param outputWeights     the output weights
+     * @param outputBias        an int, the output bias
+     * @param kernel            the Kernel to run the arithmetic on
+     */
+    private Nnue(int hidden, short[] featureWeights, short[] hiddenBiases, short[] outputWeights, int outputBias,
+                 Kernel kernel) {
+        if (hidden <= 0 || hidden % LANES != 0)
+            throw new IllegalArgumentException("the hidden layer size must be a multiple of " + LANES);
+        this.hidden = hidden;
+        this.featureWeights = featureWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        this.kernel = kernel;
+    }
+
+    /**
+     * Load a network from a weights file.
+     *
+     * @param path  the Path of the weights file
+     * @return      the Nnue, on the Vector API if it is available
+     * @throws IOException if the file can't be read or is not a weights file
+     */
+    public static Nnue load(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+            throw new IOException("not an NNUE weights file: " + path);
+        int hidden = buffer.getInt();
+        if (hidden <= 0 || hidden % LANES != 0 || buffer.remaining() != 2 * ((INPUTS + 3) * hidden + 1))
+            throw new IOException("bad NNUE weights file size: " + path);
+        short[] featureWeights = new short[INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        buffer.asShortBuffer().get(featureWeights);
+        buffer.position(buffer.position() + 2 * featureWeights.length);
+        buffer.asShortBuffer().get(hiddenBiases);
+        buffer.position(buffer.position() + 2 * hidden);
+        buffer.asShortBuffer().get(outputWeights);
+        buffer.position(buffer.position() + 4 * hidden);
+        return new Nnue(hidden, featureWeights, hiddenBiases, outputWeights, buffer.getShort(), bestKernel());
+    }
+
+    /**
+     * Write the network to a weights file that load reads back.
+     *
+     * @param path  the Path to write
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 2 * ((INPUTS + 3) * hidden + 1)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(hidden);
+        for (short weight : featureWeights)
+            buffer.putShort(weight);
+        for (short bias : hiddenBiases)
+            buffer.putShort(bias);
+        for (short weight : outputWeights)
+            buffer.putShort(weight);
+        buffer.putShort((short) outputBias);
+        Files.write(path, buffer.array());
+    }
+
+    /**
+     * Create a network with small random weights, for tests and benchmarks.
+     *
+     * @param hidden    an int, the hidden layer size, a multiple of 32
+     * @param seed      a long, the seed of the weights
+     * @return          the Nnue, on the Vector API if it is available
+     */
+    public static Nnue random(int hidden, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        short[] featureWeights = new short[INPUTS * hidden];
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < featureWeights.length; i++)
+            featureWeights[i] = (short) random.nextInt(-32, 33);
+        for (int i = 0; i < hidden; i++)
+            hiddenBiases[i] = (short) random.nextInt(0, 64);
+        for (int i = 0; i < outputWeights.length; i++)
+            outputWeights[i] = (short) random.nextInt(-QB, QB + 1);
+        return new Nnue(hidden, featureWeights, hiddenBiases, outputWeights, 0, bestKernel());
+    }
+
+    /**
+     * a getter for the same network computed with plain loops, to compare with
+     * the Vector API
+     * @return  an Nnue sharing this network's weights
+     */
+    public Nnue scalar() {
+        return new Nnue(hidden, featureWeights, hiddenBiases, outputWeights, outputBias, new ScalarKernel());
+    }
+
+    /**
+     * a getter for whether the arithmetic runs on the Vector API
+     * @return  a boolean, false for the plain loops
+     */
+    public boolean isVectorized() {
+        return !(kernel instanceof ScalarKernel);
+    }
+
+    /**
+     * a getter for the hidden layer size
+     * @return  an int
+     */
+    public int hidden() {
+        return hidden;
+    }
+
+    /**
+     * Compute both accumulators of a position from all its pieces.
+     *
+     * @param position      the Position
+     * @param accumulator   a short array of 2 * hidden values, white's side then black's
+     */
+    public void refresh(Position position, short[] accumulator) {
+        System.arraycopy(hiddenBiases, 0, accumulator, 0, hidden);
+        System.arraycopy(hiddenBiases, 0, accumulator, hidden, hidden);
+        for (int color = WHITE; color <= BLACK; color++) {
+            for (int i = 0; i < position.pieceCount(color); i++) {
+                int sq = position.pieceSquare(color, i);
+                int piece = position.pieceAt(sq);
+                kernel.add(accumulator, 0, featureWeights, row(WHITE, piece, sq), hidden);
+                kernel.add(accumulator, hidden, featureWeights, row(BLACK, piece, sq), hidden);
+            }
+        }
+    }
+
+    /**
+     * Update both accumulators for a piece that leaves one square and a piece
+     * that arrives on another: child = parent + arriving - leaving.
+     *
+     * @param parent    the accumulator before, 2 * hidden values
+     * @param child     the accumulator to write, may be the parent itself
+     * @param added     an int, the arriving piece code
+     * @param addedSq   an int, the square it arrives on
+     * @param removed   an int, the leaving piece code
+     * @param removedSq an int, the square it leaves
+     */
+    public void addSub(short[] parent, short[] child, int added, int addedSq, int removed, int removedSq) {
+        kernel.addSub(parent, 0, child, 0, featureWeights, row(WHITE, added, addedSq),
+                row(WHITE, removed, removedSq), hidden);
+        kernel.addSub(parent, hidden, child, hidden, featureWeights, row(BLACK, added, addedSq),
+                row(BLACK, removed, removedSq), hidden);
+    }
+
+    /**
+     * Take a piece out of both accumulators.
+     *
+     * @param accumulator   the accumulator to update in place
+     * @param piece         an int, the piece code
+     * @param sq            an int, the square it is taken from
+     */
+    public void sub(short[] accumulator, int piece, int sq) {
+        kernel.sub(accumulator, 0, featureWeights, row(WHITE, piece, sq), hidden);
+        kernel.sub(accumulator, hidden, featureWeights, row(BLACK, piece, sq), hidden);
+    }
+
+    /**
+     * Score a position from its accumulators.
+     *
+     * @param accumulator   the accumulator of the position, 2 * hidden values
+     * @param side          an int, the color to move
+     * @return              an int, the score in centipawns for the side to move
+     */
+    public int evaluate(short[] accumulator, int side) {
+        int output = outputBias
+                + kernel.clippedDot(accumulator, side * hidden, outputWeights, 0, hidden, QA)
+                + kernel.clippedDot(accumulator, (side ^ 1) * hidden, outputWeights, hidden, hidden, QA);
+        return output * SCALE / (QA * QB);
+    }
+
+    /**
+     * The offset of a feature's weight row. From black's side the colors are
+     * swapped and the board is mirrored, so both sides see their own pieces
+     * the same way.
+     *
+     * @param perspective   an int, WHITE or BLACK
+     * @param piece         an int, the piece code
+     * @param sq            an int, the square index
+     * @return              an int, the offset in the feature weights
+     */
+    private int row(int perspective, int piece, int sq) {
+        int feature = perspective == WHITE ? piece * 64 + sq
+                : piece(colorOf(piece) ^ 1, typeOf(piece)) * 64 + (sq ^ 56);
+        return feature * hidden;
+    }
+
+    /**
+     * Pick the Vector API kernel if the module was added to the JVM, plain
+     * loops if it wasn't. NnueVector is only loaded in the first case.
+     *
+     * @return  the Kernel to use
+     */
+    private static Kernel bestKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+            return new NnueVector();
+        return new ScalarKernel();
+    }
+
+    /**
+     * The arithmetic of the network on arrays of 16-bit values. Every length
+     * is a multiple of 32.
+     */
+    interface Kernel {
+
+        /**
+         * dst = src + weights[add] - weights[sub], element by element.
+         */
+        void addSub(short[] src, int srcOffset, short[] dst, int dstOffset, short[] weights, int addOffset,
+                    int subOffset, int length);
+
+        /**
+         * dst += weights[add], element by element.
+         */
+        void add(short[] dst, int dstOffset, short[] weights, int addOffset, int length);
+
+        /**
+         * dst -= weights[sub], element by element.
+         */
+        void sub(short[] dst, int dstOffset, short[] weights, int subOffset, int length);
+
+        /**
+         * The dot product of the values clipped to 0..max with the weights.
+         */
+        int clippedDot(short[] values, int valuesOffset, short[] weights, int weightsOffset, int length, int max);
+    }
+
+    /**
+     * The Kernel as plain loops, for JVMs without the Vector API.
+     */
+    static final class ScalarKernel implements Kernel {
+
+        @Override
+        public void addSub(short[] src, int srcOffset, short[] dst, int dstOffset, short[] weights, int addOffset,
+                           int subOffset, int length) {
+            for (int i = 0; i < length; i++)
+                dst[dstOffset + i] = (short) (src[srcOffset + i] + weights[addOffset + i] - weights[subOffset + i]);
+        }
+
+        @Override
+        public void add(short[] dst, int dstOffset, short[] weights, int addOffset, int length) {
+            for (int i = 0; i < length; i++)
+                dst[dstOffset + i] += weights[addOffset + i];
+        }
+
+        @Override
+        public void sub(short[] dst, int dstOffset, short[] weights, int subOffset, int length) {
+            for (int i = 0; i < length; i++)
+                dst[dstOffset + i] -= weights[subOffset + i];
+        }
+
+        @Override
+        public int clippedDot(short[] values, int valuesOffset, short[] weights, int weightsOffset, int length,
+                              int max) {
+            int sum = 0;
+            for (int i = 0; i < length; i++)
+                sum += Math.min(Math.max(values[valuesOffset + i], 0), max) * weights[weightsOffset + i];
+            return sum;
+        }
+    }
+}
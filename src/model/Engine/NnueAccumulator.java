@@ -0,0 +1,84 @@
+package model.Engine;
+
+import model.PackedMove;
+import model.Position;
+
+import static model.Position.*;
+
+/**
+ * This class keeps the Nnue accumulators of a search, one per ply. Before a
+ * move is made the child's accumulator is derived from the parent's with the
+ * weight rows of the few pieces the move changes, and taking the move back
+ * just drops back to the parent's, which is still there. Only the root is
+ * computed from all the pieces.
+ *
+ * Like the Search that owns it, an NnueAccumulator is used by one thread.
+ */
+public class NnueAccumulator {
+    private final Nnue network;
+    private final short[][] stack = new short[Search.MAX_PLY + 1][];
+    private int ply;
+
+    /**
+     * The constructor allocates the accumulators of every ply.
+     *
+     * @param network   the Nnue to evaluate with
+     */
+    public NnueAccumulator(Nnue network) {
+        this.network = network;
+        for (int i = 0; i < stack.length; i++)
+            stack[i] = new short[2 * network.hidden()];
+    }
+
+    /**
+     * Start again from a position, computing its accumulator from scratch.
+     *
+     * @param position  the Position at the root of the search
+     */
+    public void refresh(Position position) {
+        ply = 0;
+        network.refresh(position, stack[0]);
+    }
+
+    /**
+     * Derive the accumulator after a move. Call it before the move is made.
+     *
+     * @param position  the Position before the move
+     * @param move      an int, the packed move about to be made
+     */
+    public void push(Position position, int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int piece = position.pieceAt(from);
+        int arriving = PackedMove.isPromotion(move) ? piece(colorOf(piece), PackedMove.promotion(move)) : piece;
+        short[] parent = stack[ply];
+        short[] child = stack[++ply];
+        network.addSub(parent, child, arriving, to, piece, from);
+        if (PackedMove.isEnPassant(move)) {
+            int victim = PackedMove.enPassantVictim(move);
+            network.sub(child, position.pieceAt(victim), victim);
+        } else if (PackedMove.isCapture(move)) {
+            network.sub(child, position.pieceAt(to), to);
+        } else if (PackedMove.isCastle(move)) {
+            int rook = piece(colorOf(piece), ROOK);
+            network.addSub(child, child, rook, PackedMove.castleRookTo(move), rook, PackedMove.castleRookFrom(move));
+        }
+    }
+
+    /**
+     * Go back to the accumulator before the last move pushed.
+     */
+    public void pop() {
+        ply--;
+    }
+
+    /**
+     * Score the current position.
+     *
+     * @param side  an int, the color to move
+     * @return      an int, the score in centipawns for the side to move
+     */
+    public int evaluate(int side) {
+        return network.evaluate(stack[ply], side);
+    }
+}
@@ -0,0 +1,68 @@
+package model.Engine;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class runs the arithmetic of the Nnue on the Vector API, as many 16-bit
+ * values at a time as the processor's widest registers hold. The clipped dot
+ * product widens each vector of shorts into two vectors of ints before
+ * multiplying, so the products can't overflow.
+ *
+ * It needs the JVM to be started with --add-modules jdk.incubator.vector, and
+ * is only loaded when it was (see Nnue.bestKernel).
+ */
+final class NnueVector implements Nnue.Kernel {
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    // the same width, so a vector of shorts widens into exactly two of these
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void addSub(short[] src, int srcOffset, short[] dst, int dstOffset, short[] weights, int addOffset,
+                       int subOffset, int length) {
+        for (int i = 0; i < length; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, src, srcOffset + i)
+                    .add(ShortVector.fromArray(SHORTS, weights, addOffset + i))
+                    .sub(ShortVector.fromArray(SHORTS, weights, subOffset + i))
+                    .intoArray(dst, dstOffset + i);
+        }
+    }
+
+    @Override
+    public void add(short[] dst, int dstOffset, short[] weights, int addOffset, int length) {
+        for (int i = 0; i < length; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, dst, dstOffset + i)
+                    .add(ShortVector.fromArray(SHORTS, weights, addOffset + i))
+                    .intoArray(dst, dstOffset + i);
+        }
+    }
+
+    @Override
+    public void sub(short[] dst, int dstOffset, short[] weights, int subOffset, int length) {
+        for (int i = 0; i < length; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, dst, dstOffset + i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, subOffset + i))
+                    .intoArray(dst, dstOffset + i);
+        }
+    }
+
+    @Override
+    public int clippedDot(short[] values, int valuesOffset, short[] weights, int weightsOffset, int length,
+                          int max) {
+        IntVector sum = IntVector.zero(INTS);
+        for (int i = 0; i < length; i += SHORTS.length()) {
+            ShortVector clipped = ShortVector.fromArray(SHORTS, values, valuesOffset + i)
+                    .max((short) 0)
+                    .min((short) max);
+            ShortVector weight = ShortVector.fromArray(SHORTS, weights, weightsOffset + i);
+            for (int part = 0; part < 2; part++) {
+                IntVector wideValues = (IntVector) clipped.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector wideWeights = (IntVector) weight.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(wideValues.mul(wideWeights));
+            }
+        }
+        return sum.reduceLanes(VectorOperators.ADD);
+    }
+}
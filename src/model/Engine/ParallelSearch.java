@@ -0,0 +1,215 @@
+package model.Engine;
+
+import model.ChessModel;
+import model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class searches one position on several threads at once ("Lazy SMP").
+ * Every thread runs an ordinary Search on its own copy of the position, and
+ * they only cooperate through a shared TranspositionTable: whatever one thread
+ * stores, the others find. The helpers start their iterative deepening at
+ * staggered depths so they fill the table ahead of the main thread instead of
+ * repeating its work move for move.
+ *
+ * The main search runs on the calling thread and gives the answer. When it is
+ * done the helpers are stopped.
+ */
+public class ParallelSearch {
+    private final int threads;
+    private final TranspositionTable table;
+    // one pawn table per thread, kept from search to search
+    private final PawnTable[] pawnTables;
+    private final ExecutorService helpers;
+    private volatile List<Search> running = List.of();
+    private volatile Nnue network;
+    private volatile Bitbase bitbase;
+
+    /**
+     * The constructor starts the helper threads.
+     *
+     * @param threads   an int, the number of threads searching, at least 1
+     * @param table     the TranspositionTable shared by all threads
+     */
+    public ParallelSearch(int threads, TranspositionTable table) {
+        if (threads < 1)
+            throw new IllegalArgumentException("a search needs at least 1 thread");
+        this.threads = threads;
+        this.table = table;
+        this.pawnTables = new PawnTable[threads];
+        for (int i = 0; i < threads; i++)
+            pawnTables[i] = new PawnTable(PawnTable.DEFAULT_KILOBYTES);
+        this.helpers = threads > 1 ? Executors.newFixedThreadPool(threads - 1, task -> {
+            Thread thread = new Thread(task, "search-helper");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Search the current position of a game.
+     *
+     * @param model     the ChessModel to search, it is not changed
+     * @param maxDepth  an int, the deepest iteration to search
+     * @param millis    a long, the time allowed in milliseconds, 0 for no limit
+     * @return          a Result with the main thread's move and the nodes of all threads
+     */
+    public Search.Result search(ChessModel model, int maxDepth, long millis) {
+        return search(model.copyPosition(), maxDepth, millis);
+    }
+
+    /**
+     * Search a position on all threads.
+     *
+     * @param position  the Position to search, it is not changed
+     * @param maxDepth  an int, the deepest iteration to search
+     * @param millis    a long, the time allowed in milliseconds, 0 for no limit
+     * @return          a Result with the main thread's move and the nodes of all threads
+     */
+    public Search.Result search(Position position, int maxDepth, long millis) {
+        return search(position, maxDepth, millis, millis);
+    }
+
+    /**
+     * Search a position on all threads on a soft and a hard deadline (see
+     * TimeManager). Only the main thread looks at the soft one, the helpers
+     * are stopped when it is done.
+     *
+     * @param position      the Position to search, it is not changed
+     * @param maxDepth      an int, the deepest iteration to search
+     * @param softMillis    a long, the time after which no iteration is started in milliseconds, 0 for no limit
+     * @param hardMillis    a long, the time allowed in milliseconds, 0 for no limit
+     * @return              a Result with the main thread's move and the nodes of all threads
+     */
+    public Search.Result search(Position position, int maxDepth, long softMillis, long hardMillis) {
+        long start = System.nanoTime();
+        Search main = new Search(new Position(position), table, pawnTables[0]);
+        main.setNetwork(network);
+        main.setBitbase(bitbase);
+        List<Search> searches = new ArrayList<>(threads);
+        searches.add(main);
+        List<Future<Search.Result>> futures = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            Search helper = new Search(new Position(position), table, pawnTables[i]);
+            helper.setNetwork(network);
+            helper.setBitbase(bitbase);
+            searches.add(helper);
+            // odd helpers run one iteration ahead of the main thread
+            int firstDepth = 1 + i % 2;
+            futures.add(helpers.submit(() -> helper.search(firstDepth, maxDepth, hardMillis, hardMillis)));
+        }
+        running = searches;
+
+        Search.Result result = main.search(1, maxDepth, softMillis, hardMillis);
+        long nodes = result.nodes();
+        for (int i = 1; i < threads; i++)
+            searches.get(i).stop();
+        for (Future<Search.Result> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        for (int i = 1; i < threads; i++)
+            nodes += searches.get(i).nodes();
+        running = List.of();
+        return new Search.Result(result.move(), result.score(), result.depth(), nodes, System.nanoTime() - start,
+                result.cutoffRate());
+    }
+
+    /**
+     * Stop the search on every thread. The main thread answers with its last
+     * completed depth.
+     */
+    public void stop() {
+        for (Search search : running)
+            search.stop();
+    }
+
+    /**
+     * Score the endings a Bitbase covers from its tables on every thread, from the next search on.
+     *
+     * @param bitbase   the Bitbase to probe, shared by the threads, or null for none
+     */
+    public void setBitbase(Bitbase bitbase) {
+        this.bitbase = bitbase;
+    }
+
+    /**
+     * Evaluate with a neural network on every thread, from the next search on.
+     *
+     * @param network   the Nnue to use, shared by the threads, or null for the Evaluator
+     */
+    public void setNetwork(Nnue network) {
+        this.network = network;
+    }
+
+    /**
+     * a getter for the number of threads searching
+     * @return  an int
+     */
+    public int threads() {
+        return threads;
+    }
+
+    /**
+     * Stop the helper threads. The ParallelSearch can't be used afterwards.
+     */
+    public void shutdown() {
+        if (helpers != null)
+            helpers.shutdownNow();
+    }
+
+    /**
+     * Measure how the search scales: every thread count searches the same
+     * position to the same depth with a fresh table. One untimed search runs
+     * first, so the JIT has compiled the search before the clock starts.
+     *
+     * @param position      the Position to search
+     * @param depth         an int, the depth to search to
+     * @param threadCounts  the numbers of threads to try
+     * @param megabytes     an int, the size of the table in MB
+     * @return              the Result of each thread count, by thread count
+     */
+    public static Map<Integer, Search.Result> scaling(Position position, int depth, int[] threadCounts,
+                                                      int megabytes) {
+        Map<Integer, Search.Result> results = new TreeMap<>();
+        new Search(new Position(position), new TranspositionTable(megabytes)).search(depth, 0);
+        for (int threadCount : threadCounts) {
+            ParallelSearch search = new ParallelSearch(threadCount, new TranspositionTable(megabytes));
+            results.put(threadCount, search.search(position, depth, 0));
+            search.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Print the scaling table from the command line: nodes per second and time
+     * to depth for 1, 2, 4, 8 and 16 threads.
+     *
+     * @param args  FEN (quoted, default the start position), depth (default 8) and table size in MB (default 64)
+     */
+    public static void main(String[] args) {
+        String fen = args.length > 0 ? args[0] : Perft.START_FEN;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        System.out.printf("%d processors, depth %d%n", Runtime.getRuntime().availableProcessors(), depth);
+        System.out.printf("%8s %12s %14s %10s %8s%n", "threads", "nodes", "nodes/s", "seconds", "speedup");
+        Map<Integer, Search.Result> results = scaling(Position.fromFen(fen), depth, new int[]{1, 2, 4, 8, 16},
+                megabytes);
+        long single = results.get(1).nanos();
+        results.forEach((threadCount, result) -> System.out.printf("%8d %12d %14.0f %10.3f %8.2f%n", threadCount,
+                result.nodes(), result.nodesPerSecond(), result.nanos() / 1e9, (double) single / result.nanos()));
+    }
+}
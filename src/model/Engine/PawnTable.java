@@ -0,0 +1,240 @@
+package model.Engine;
+
+import model.Position;
+
+import java.util.Arrays;
+
+import static model.Position.*;
+
+/**
+ * This class scores the pawn structure of a position and remembers the result
+ * by the position's pawn key (see Position.pawnKey). Only pawn moves and pawn
+ * captures change the structure, so most positions in a search share it with
+ * their parent and the score is found in the table instead of being worked out
+ * again. Passed pawns are kept as one bitboard per color, for any evaluation
+ * term that needs them.
+ *
+ * The structure terms, white minus black, are:
+ *
+ *   doubled pawns, a penalty for each extra pawn on a column
+ *   isolated pawns, a penalty for a pawn with no friendly pawn on either neighbouring column
+ *   passed pawns, a bonus by rank for a pawn no enemy pawn can stop or block
+ *
+ * A PawnTable is not thread safe: every search thread has its own, which also
+ * keeps each thread's structures in its own cache lines.
+ */
+public class PawnTable {
+    public static final int DEFAULT_KILOBYTES = 512;
+    // keys, two scores and two passed pawn masks
+    private static final int ENTRY_BYTES = 32;
+
+    private static final int DOUBLED_MIDDLEGAME = -10;
+    private static final int DOUBLED_ENDGAME = -20;
+    private static final int ISOLATED_MIDDLEGAME = -10;
+    private static final int ISOLATED_ENDGAME = -15;
+    // indexed by the number of rows a pawn has advanced from its starting row
+    private static final int[] PASSED_MIDDLEGAME = {0, 10, 20, 35, 60, 100};
+    private static final int[] PASSED_ENDGAME = {0, 20, 40, 70, 120, 200};
+
+    private static final long[] COLUMNS = new long[8];
+    private static final long[] NEIGHBOUR_COLUMNS = new long[8];
+    // the squares ahead of a pawn on its own and the neighbouring columns
+    private static final long[][] PASSED_MASKS = new long[2][64];
+
+    static {
+        for (int col = 0; col < 8; col++)
+            COLUMNS[col] = 0x0101010101010101L << col;
+        for (int col = 0; col < 8; col++)
+            NEIGHBOUR_COLUMNS[col] = (col > 0 ? COLUMNS[col - 1] : 0) | (col < 7 ? COLUMNS[col + 1] : 0);
+        for (int sq = 0; sq < 64; sq++) {
+            long span = COLUMNS[column(sq)] | NEIGHBOUR_COLUMNS[column(sq)];
+            // white moves towards row 0, the low bits
+            PASSED_MASKS[WHITE][sq] = span & ((1L << (row(sq) * 8)) - 1);
+            PASSED_MASKS[BLACK][sq] = row(sq) == 7 ? 0 : span & (-1L << ((row(sq) + 1) * 8));
+        }
+    }
+
+    private final long[] keys;
+    private final int[] middlegame;
+    private final int[] endgame;
+    private final long[] passed;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * The constructor allocates the table.
+     *
+     * @param kilobytes an int, the size of the table in KB, rounded down to a power of two entries
+     */
+    public PawnTable(int kilobytes) {
+        if (kilobytes < 1)
+            throw new IllegalArgumentException("a pawn table needs at least 1 KB");
+        int entries = Integer.highestOneBit(Math.max(1, kilobytes * 1024 / ENTRY_BYTES));
+        keys = new long[entries];
+        middlegame = new int[entries];
+        endgame = new int[entries];
+        passed = new long[entries * 2];
+        mask = entries - 1;
+        // key 0 (no pawns) scores 0, which is what an empty slot already holds
+    }
+
+    /**
+     * Find the pawn structure of a position, scoring it if it is not stored.
+     *
+     * @param position  the Position to look up
+     * @return          an int, the slot to read the scores and passed pawns from
+     */
+    public int probe(Position position) {
+        long key = position.pawnKey();
+        int slot = (int) key & mask;
+        if (keys[slot] == key) {
+            hits++;
+            return slot;
+        }
+        misses++;
+        keys[slot] = key;
+        score(position, slot);
+        return slot;
+    }
+
+    /**
+     * a getter for the middlegame pawn structure score of a slot
+     * @param slot  an int, a slot returned by probe
+     * @return      an int, white's score minus black's in centipawns
+     */
+    public int middlegame(int slot) {
+        return middlegame[slot];
+    }
+
+    /**
+     * a getter for the endgame pawn structure score of a slot
+     * @param slot  an int, a slot returned by probe
+     * @return      an int, white's score minus black's in centipawns
+     */
+    public int endgame(int slot) {
+        return endgame[slot];
+    }
+
+    /**
+     * a getter for the passed pawns of a slot
+     * @param slot  an int, a slot returned by probe
+     * @param color an int, WHITE or BLACK
+     * @return      a long, the bitboard of the color's passed pawns
+     */
+    public long passed(int slot, int color) {
+        return passed[slot * 2 + color];
+    }
+
+    /**
+     * Work out the structure terms of a position into a slot.
+     *
+     * @param position  the Position to score
+     * @param slot      an int, the slot to fill
+     */
+    private void score(Position position, int slot) {
+        int middlegameScore = 0;
+        int endgameScore = 0;
+        for (int color = WHITE; color <= BLACK; color++) {
+            int sign = color == WHITE ? 1 : -1;
+            long ours = position.pieces(color, PAWN);
+            long theirs = position.pieces(color ^ 1, PAWN);
+            long passedPawns = 0;
+            for (int col = 0; col < 8; col++) {
+                int count = Long.bitCount(ours & COLUMNS[col]);
+                if (count > 1) {
+                    middlegameScore += sign * DOUBLED_MIDDLEGAME * (count - 1);
+                    endgameScore += sign * DOUBLED_ENDGAME * (count - 1);
+                }
+                if (count > 0 && (ours & NEIGHBOUR_COLUMNS[col]) == 0) {
+                    middlegameScore += sign * ISOLATED_MIDDLEGAME * count;
+                    endgameScore += sign * ISOLATED_ENDGAME * count;
+                }
+            }
+            for (long pawns = ours; pawns != 0; pawns &= pawns - 1) {
+                int sq = Long.numberOfTrailingZeros(pawns);
+                // only the front pawn of a doubled pair counts as passed
+                long ahead = PASSED_MASKS[color][sq];
+                if ((ahead & theirs) == 0 && (ahead & COLUMNS[column(sq)] & ours) == 0) {
+                    passedPawns |= bit(sq);
+                    int advance = Math.max(0, Math.min(5, color == WHITE ? 6 - row(sq) : row(sq) - 1));
+                    middlegameScore += sign * PASSED_MIDDLEGAME[advance];
+                    endgameScore += sign * PASSED_ENDGAME[advance];
+                }
+            }
+            passed[slot * 2 + color] = passedPawns;
+        }
+        middlegame[slot] = middlegameScore;
+        endgame[slot] = endgameScore;
+    }
+
+    /**
+     * Empty the table and reset the counters.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(middlegame, 0);
+        Arrays.fill(endgame, 0);
+        Arrays.fill(passed, 0L);
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * a getter for the number of entries
+     * @return  an int, a power of two
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * a getter for the number of probes that found their structure
+     * @return  a long
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * a getter for the number of probes that had to score their structure
+     * @return  a long
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * a getter for the share of probes that found their structure
+     * @return  a double, between 0 and 1
+     */
+    public double hitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * @return  a String with the size and hit rate
+     */
+    @Override
+    public String toString() {
+        return String.format("pawn table %d entries, %d probes, %.1f%% hits", capacity(), hits + misses,
+                100 * hitRate());
+    }
+
+    /**
+     * Print the pawn table hit rate of a search at several table sizes, to
+     * choose a size from the command line.
+     *
+     * @param args  FEN (quoted, default the start position) and depth (default 8)
+     */
+    public static void main(String[] args) {
+        String fen = args.length > 0 ? args[0] : Perft.START_FEN;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        for (int kilobytes = 4; kilobytes <= 4096; kilobytes *= 4) {
+            Search search = new Search(Position.fromFen(fen),
+                    new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES), new PawnTable(kilobytes));
+            search.search(depth, 0);
+            System.out.printf("%5d KB: %s%n", kilobytes, search.pawnTable());
+        }
+    }
+}
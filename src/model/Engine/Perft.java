@@ -0,0 +1,216 @@
+package model.Engine;
+
+import model.ChessModel;
+import model.MoveGenerator;
+import model.MoveList;
+import model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the leaf nodes of the legal move tree of a position to a
+ * fixed depth ("perft"). The counts of the standard test positions are well
+ * known, so perft checks the move generator exactly, and its speed is a
+ * throughput measure of move generation and make/unmake.
+ *
+ * The top of the tree is split across a ForkJoinPool: every move above
+ * SPLIT_DEPTH becomes its own task on its own copy of the position, and each
+ * task below that counts its subtree on a single thread. An optional
+ * PerftCache shares the counts of transposed positions between threads.
+ */
+public class Perft {
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    // subtrees of this depth or less are counted by one thread
+    private static final int SPLIT_DEPTH = 3;
+    private static final int MAX_DEPTH = 64;
+
+    private final ForkJoinPool pool;
+    private final PerftCache cache;
+    private final Map<String, LongAdder> threadNodes = new ConcurrentHashMap<>();
+
+    /**
+     * The constructor creates the thread pool.
+     *
+     * @param threads   an int, the number of worker threads
+     * @param cache     the PerftCache to share counts through, or null for none
+     */
+    public Perft(int threads, PerftCache cache) {
+        this.pool = new ForkJoinPool(threads);
+        this.cache = cache;
+    }
+
+    /**
+     * Count the current position of a game.
+     *
+     * @param model the ChessModel whose position is counted, it is not changed
+     * @param depth an int, the number of plies to count
+     * @return      a Result with the node count and timings
+     */
+    public Result run(ChessModel model, int depth) {
+        return run(model.copyPosition(), depth);
+    }
+
+    /**
+     * Count a position in parallel.
+     *
+     * @param position  the Position to count, it is not changed
+     * @param depth     an int, the number of plies to count
+     * @return          a Result with the node count and timings
+     */
+    public Result run(Position position, int depth) {
+        threadNodes.clear();
+        long start = System.nanoTime();
+        long nodes = pool.invoke(new PerftTask(new Position(position), depth));
+        long nanos = System.nanoTime() - start;
+        Map<String, Long> perThread = new TreeMap<>();
+        threadNodes.forEach((thread, count) -> perThread.put(thread, count.sum()));
+        return new Result(nodes, nanos, perThread);
+    }
+
+    /**
+     * Count a position on the calling thread.
+     *
+     * @param position  the Position to count, it is restored before returning
+     * @param depth     an int, the number of plies to count
+     * @param cache     the PerftCache to use, or null for none
+     * @return          a long, the number of leaf nodes
+     */
+    public static long count(Position position, int depth, PerftCache cache) {
+        MoveList[] lists = new MoveList[depth + 1];
+        for (int i = 0; i <= depth; i++)
+            lists[i] = new MoveList();
+        return count(position, depth, cache, lists);
+    }
+
+    /**
+     * Count a subtree. The moves of the last ply are counted without being
+     * played, and each depth has its own preallocated MoveList.
+     *
+     * @param position  the Position to count
+     * @param depth     an int, the number of plies to count
+     * @param cache     the PerftCache to use, or null for none
+     * @param lists     one MoveList per depth
+     * @return          a long, the number of leaf nodes
+     */
+    private static long count(Position position, int depth, PerftCache cache, MoveList[] lists) {
+        if (depth == 0)
+            return 1;
+        MoveList list = lists[depth];
+        MoveGenerator.generateLegal(position, list);
+        if (depth == 1)
+            return list.size();
+        if (cache != null) {
+            long cached = cache.get(position.key(), depth);
+            if (cached >= 0)
+                return cached;
+        }
+        long nodes = 0;
+        for (int i = 0; i < list.size(); i++) {
+            position.makeMove(list.get(i));
+            nodes += count(position, depth - 1, cache, lists);
+            position.unmakeMove();
+        }
+        if (cache != null)
+            cache.put(position.key(), depth, nodes);
+        return nodes;
+    }
+
+    /**
+     * The task counting one subtree, forking a task per move until SPLIT_DEPTH.
+     */
+    private class PerftTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+        private final Position position;
+        private final int depth;
+
+        /**
+         * @param position  the Position to count, owned by this task
+         * @param depth     an int, the number of plies to count
+         */
+        PerftTask(Position position, int depth) {
+            this.position = position;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth <= SPLIT_DEPTH) {
+                long nodes = count(position, depth, cache);
+                threadNodes.computeIfAbsent(Thread.currentThread().getName(), thread -> new LongAdder()).add(nodes);
+                return nodes;
+            }
+            if (cache != null) {
+                long cached = cache.get(position.key(), depth);
+                if (cached >= 0)
+                    return cached;
+            }
+            MoveList list = new MoveList();
+            MoveGenerator.generateLegal(position, list);
+            List<PerftTask> tasks = new ArrayList<>(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                Position child = new Position(position);
+                child.makeMove(list.get(i));
+                tasks.add(new PerftTask(child, depth - 1));
+            }
+            long nodes = 0;
+            for (PerftTask task : invokeAll(tasks))
+                nodes += task.join();
+            if (cache != null)
+                cache.put(position.key(), depth, nodes);
+            return nodes;
+        }
+    }
+
+    /**
+     * The outcome of a perft run.
+     *
+     * @param nodes         a long, the number of leaf nodes
+     * @param nanos         a long, the time taken in nanoseconds
+     * @param threadNodes   the leaf nodes counted by each worker thread
+     */
+    public record Result(long nodes, long nanos, Map<String, Long> threadNodes) {
+
+        /**
+         * @return  a double, leaf nodes per second over all threads
+         */
+        public double nodesPerSecond() {
+            return nodes * 1e9 / Math.max(1, nanos);
+        }
+
+        /**
+         * @return  a String with the totals and one line per thread
+         */
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            report.append(String.format("nodes %d in %.3f s, %.0f nodes/s%n", nodes, nanos / 1e9, nodesPerSecond()));
+            threadNodes.forEach((thread, count) -> report.append(String.format("  %s: %d nodes, %.0f nodes/s%n",
+                    thread, count, count * 1e9 / Math.max(1, nanos))));
+            return report.toString();
+        }
+    }
+
+    /**
+     * Run perft from the command line.
+     *
+     * @param args  FEN (quoted, default the start position), depth (default 5),
+     *              threads (default all processors) and cache size in MB (default 0, no cache)
+     */
+    public static void main(String[] args) {
+        String fen = args.length > 0 ? args[0] : START_FEN;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int cacheMegabytes = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        if (depth < 0 || depth > MAX_DEPTH)
+            throw new IllegalArgumentException("depth must be between 0 and " + MAX_DEPTH);
+        PerftCache cache = cacheMegabytes > 0 ? new PerftCache(cacheMegabytes) : null;
+        System.out.print(new Perft(threads, cache).run(Position.fromFen(fen), depth));
+    }
+}
@@ -0,0 +1,66 @@
+package model.Engine;
+
+/**
+ * This class caches perft node counts by Zobrist key and depth, so that a
+ * position reached through different move orders is only counted once. It is a
+ * fixed-size, power-of-two table of two longs per slot, shared by every perft
+ * thread without locks.
+ *
+ * Each slot holds the node count and the position's check value XORed with that
+ * count. Two threads can write the same slot at once and leave one thread's
+ * count next to the other's check, but then the XOR no longer gives back the
+ * check value and the read is simply treated as a miss.
+ */
+public class PerftCache {
+    private final long[] table;
+    private final int mask;
+
+    /**
+     * The constructor allocates the table.
+     *
+     * @param megabytes an int, the size of the table in MB, rounded down to a power of two slots
+     */
+    public PerftCache(int megabytes) {
+        long slots = Long.highestOneBit(Math.max(1L, (long) megabytes * 1024 * 1024 / 16));
+        table = new long[(int) Math.min(slots, 1 << 29) * 2];
+        mask = table.length / 2 - 1;
+    }
+
+    /**
+     * Look up the node count of a position.
+     *
+     * @param key   a long, the Zobrist key of the position
+     * @param depth an int, the depth that was counted
+     * @return      a long, the node count or -1 if it is not cached
+     */
+    public long get(long key, int depth) {
+        long check = check(key, depth);
+        int slot = ((int) key & mask) << 1;
+        long nodes = table[slot + 1];
+        return (table[slot] ^ nodes) == check ? nodes : -1;
+    }
+
+    /**
+     * Store the node count of a position, replacing whatever was in its slot.
+     *
+     * @param key   a long, the Zobrist key of the position
+     * @param depth an int, the depth that was counted
+     * @param nodes a long, the node count
+     */
+    public void put(long key, int depth, long nodes) {
+        int slot = ((int) key & mask) << 1;
+        table[slot] = check(key, depth) ^ nodes;
+        table[slot + 1] = nodes;
+    }
+
+    /**
+     * Mix the depth into the key, so counts of different depths never match.
+     *
+     * @param key   a long, the Zobrist key
+     * @param depth an int, the depth
+     * @return      a long, the value stored to validate a slot
+     */
+    private static long check(long key, int depth) {
+        return key ^ (depth * 0x9E3779B97F4A7C15L);
+    }
+}
@@ -0,0 +1,537 @@
+package model.Engine;
+
+import model.MoveGenerator;
+import model.MoveList;
+import model.PackedMove;
+import model.Position;
+
+import java.util.Arrays;
+
+import static model.Position.*;
+
+/**
+ * This class searches a position for the best move with negamax alpha-beta.
+ * Negamax scores every position from the side to move, so one routine serves
+ * both colors: a child's score is negated on the way back up. Alpha-beta skips
+ * the moves that cannot change the result: once a move is shown to be worse
+ * for the opponent than an option they already have (beta), the rest of the
+ * node is cut off.
+ *
+ * The search deepens one ply at a time (iterative deepening) until the depth
+ * limit or the time runs out, and answers with the move of the last completed
+ * depth. Each iteration tries the previous iteration's best move first, which
+ * makes the cutoffs happen early.
+ *
+ * Results are kept in a TranspositionTable. A position already searched deep
+ * enough returns its stored score, and a shallower entry still gives the move
+ * to try first. Mate scores are stored relative to the position, not the root,
+ * so they stay right when the position is reached at another ply.
+ *
+ * The moves of a node are handed out by a MovePicker: the table's move, then
+ * captures, then killer moves, then the rest by their history score. A quiet
+ * move that causes a cutoff becomes a killer of its ply and gains history, so
+ * it is tried early in the sibling nodes too.
+ *
+ * At depth 0 the search doesn't stop in the middle of an exchange: a
+ * quiescence search plays on the captures (all moves when in check) until the
+ * position is quiet. The side to move may also "stand pat" on the static
+ * score, and captures that lose material by static exchange evaluation (see
+ * See) are skipped, which keeps the capture trees small.
+ *
+ * The endings a Bitbase covers are not searched at all: below the root their
+ * exact score, a mate in so many plies or a draw, comes from its tables.
+ *
+ * A Search owns its Position and is used by one thread at a time, the
+ * TranspositionTable can be shared.
+ */
+public class Search {
+    public static final int MAX_PLY = 128;
+    public static final int INFINITE = 32000;
+    public static final int MATE = 31000;
+    // scores beyond this are mates, MATE minus the plies to mate
+    public static final int MATE_BOUND = MATE - MAX_PLY;
+    public static final int DRAW = 0;
+    // how often, in nodes, to look at the clock
+    private static final int CHECK_INTERVAL = 2047;
+    // how many times longer than the last iteration the next one is expected to take
+    private static final int ITERATION_GROWTH = 5;
+    // history scores are halved once one passes this, so they never overflow
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    private final Position position;
+    private final TranspositionTable table;
+    private final PawnTable pawns;
+    // the network's accumulators, null to use the Evaluator
+    private NnueAccumulator accumulator;
+    // the exact results of the small endings, null for none
+    private Bitbase bitbase;
+    private final MoveList[] lists = new MoveList[MAX_PLY + 1];
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY + 1];
+    // two killer moves per ply, and a history score per color, from and to square
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][][] history = new int[2][64][64];
+    // the capture sequence of See, reused by every exchange of this search
+    private final int[] seeGain = new int[See.MAX_CAPTURES];
+    private long nodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long deadline;
+    private volatile boolean stopped;
+    private int rootBestMove;
+
+    /**
+     * The constructor takes the position to search, with a table of its own.
+     *
+     * @param position  the Position to search, owned by this Search from now on
+     */
+    public Search(Position position) {
+        this(position, new TranspositionTable(TranspositionTable.DEFAULT_MEGABYTES));
+    }
+
+    /**
+     * The constructor takes the position to search and the table to use.
+     *
+     * @param position  the Position to search, owned by this Search from now on
+     * @param table     the TranspositionTable to read and fill, it may be shared
+     */
+    public Search(Position position, TranspositionTable table) {
+        this(position, table, new PawnTable(PawnTable.DEFAULT_KILOBYTES));
+    }
+
+    /**
+     * The constructor takes the position to search and the tables to use.
+     *
+     * @param position  the Position to search, owned by this Search from now on
+     * @param table     the TranspositionTable to read and fill, it may be shared
+     * @param pawns     the PawnTable for the evaluation, owned by this Search's thread
+     */
+    public Search(Position position, TranspositionTable table, PawnTable pawns) {
+        this.position = position;
+        this.table = table;
+        this.pawns = pawns;
+        for (int i = 0; i <= MAX_PLY; i++) {
+            lists[i] = new MoveList();
+            pickers[i] = new MovePicker();
+        }
+    }
+
+    /**
+     * Search the position with iterative deepening.
+     *
+     * @param maxDepth  an int, the deepest iteration to search
+     * @param millis    a long, the time allowed in milliseconds, 0 for no limit
+     * @return          a Result with the best move of the last completed depth
+     */
+    public Result search(int maxDepth, long millis) {
+        return search(1, maxDepth, millis);
+    }
+
+    /**
+     * Search the position with iterative deepening from a given depth. Helper
+     * threads of a ParallelSearch start at different depths, so they are not
+     * all searching the same tree at the same time.
+     *
+     * @param firstDepth    an int, the first iteration to search
+     * @param maxDepth      an int, the deepest iteration to search
+     * @param millis        a long, the time allowed in milliseconds, 0 for no limit
+     * @return              a Result with the best move of the last completed depth
+     */
+    public Result search(int firstDepth, int maxDepth, long millis) {
+        return search(firstDepth, maxDepth, millis, millis);
+    }
+
+    /**
+     * Search the position with iterative deepening on a soft and a hard
+     * deadline (see TimeManager). No iteration is started after the soft one,
+     * the hard one aborts the iteration being searched.
+     *
+     * @param firstDepth    an int, the first iteration to search
+     * @param maxDepth      an int, the deepest iteration to search
+     * @param softMillis    a long, the time after which no iteration is started in milliseconds, 0 for no limit
+     * @param hardMillis    a long, the time allowed in milliseconds, 0 for no limit
+     * @return              a Result with the best move of the last completed depth
+     */
+    public Result search(int firstDepth, int maxDepth, long softMillis, long hardMillis) {
+        long start = System.nanoTime();
+        long softDeadline = softMillis > 0 ? start + softMillis * 1_000_000 : Long.MAX_VALUE;
+        deadline = hardMillis > 0 ? start + hardMillis * 1_000_000 : Long.MAX_VALUE;
+        nodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        for (int[] plyKillers : killers)
+            Arrays.fill(plyKillers, PackedMove.NONE);
+        for (int[][] colorHistory : history) {
+            for (int[] fromHistory : colorHistory)
+                Arrays.fill(fromHistory, 0);
+        }
+
+        MoveList root = lists[0];
+        MoveGenerator.generateLegal(position, root);
+        if (accumulator != null)
+            accumulator.refresh(position);
+        if (root.size() == 0) {
+            stopped = false;
+            return new Result(PackedMove.NONE, position.inCheck(position.sideToMove()) ? -MATE : DRAW, 0, 0,
+                    System.nanoTime() - start, 0);
+        }
+        rootBestMove = root.get(0);
+        Result result = new Result(rootBestMove, 0, 0, 0, 0, 0);
+        int lastDepth = Math.min(maxDepth, MAX_PLY);
+        long iterationStart = System.nanoTime();
+        for (int depth = Math.max(1, Math.min(firstDepth, lastDepth)); depth <= lastDepth; depth++) {
+            int score = searchRoot(depth);
+            if (stopped)
+                break;
+            result = new Result(rootBestMove, score, depth, nodes, System.nanoTime() - start, cutoffRate());
+            // a shorter mate can't be found by searching deeper
+            if (Math.abs(score) >= MATE_BOUND)
+                break;
+            // each iteration takes a few times as long as the last, one that can't end before the hard
+            // deadline would only be thrown away
+            long now = System.nanoTime();
+            if (now > softDeadline || now + ITERATION_GROWTH * (now - iterationStart) > deadline)
+                break;
+            iterationStart = now;
+        }
+        stopped = false;
+        return result;
+    }
+
+    /**
+     * Stop the search as soon as possible. The result of the last completed
+     * depth is returned. A search that has not started yet stops at once.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * a getter for the number of positions searched so far
+     * @return  a long
+     */
+    public long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Score the endings a Bitbase covers from its tables instead of searching them.
+     *
+     * @param bitbase   the Bitbase to probe, or null for none
+     */
+    public void setBitbase(Bitbase bitbase) {
+        this.bitbase = bitbase;
+    }
+
+    /**
+     * Evaluate with a neural network instead of the Evaluator, from the next
+     * search on.
+     *
+     * @param network   the Nnue to use, or null to go back to the Evaluator
+     */
+    public void setNetwork(Nnue network) {
+        accumulator = network == null ? null : new NnueAccumulator(network);
+    }
+
+    /**
+     * a getter for the pawn structure cache, with its hit rate
+     * @return  the PawnTable of this Search
+     */
+    public PawnTable pawnTable() {
+        return pawns;
+    }
+
+    /**
+     * a getter for how well the moves are ordered
+     * @return  a double, the share of beta cutoffs caused by the first move searched
+     */
+    public double cutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    /**
+     * Search every root move to a depth. The previous best move is searched
+     * first. Promotions other than to a Queen are left out at the root, since a
+     * player's click always promotes to a Queen.
+     *
+     * @param depth an int, the depth to search
+     * @return      an int, the score of the best move
+     */
+    private int searchRoot(int depth) {
+        MoveList root = lists[0];
+        for (int i = 0; i < root.size(); i++) {
+            if (root.get(i) == rootBestMove)
+                root.swap(0, i);
+        }
+        int alpha = -INFINITE;
+        int best = root.get(0);
+        for (int i = 0; i < root.size(); i++) {
+            int move = root.get(i);
+            if (PackedMove.isPromotion(move) && PackedMove.promotion(move) != QUEEN)
+                continue;
+            play(move);
+            int score = -negamax(depth - 1, 1, -INFINITE, -alpha);
+            undo();
+            if (stopped)
+                return alpha;
+            if (score > alpha) {
+                alpha = score;
+                best = move;
+            }
+        }
+        rootBestMove = best;
+        table.store(position.key(), best, toTable(alpha, 0), depth, TranspositionTable.EXACT);
+        return alpha;
+    }
+
+    /**
+     * Search a position below the root.
+     *
+     * @param depth an int, the remaining depth
+     * @param ply   an int, the distance from the root
+     * @param alpha an int, the score the side to move is already sure of
+     * @param beta  an int, the score the opponent is already sure of
+     * @return      an int, the score for the side to move
+     */
+    private int negamax(int depth, int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_INTERVAL) == 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return DRAW;
+        if (position.isRepetition() || position.halfmoveClock() >= 100)
+            return DRAW;
+        if (bitbase != null) {
+            int score = bitbase.probe(position);
+            if (score != Bitbase.UNKNOWN)
+                return score > MATE_BOUND ? score - ply : score < -MATE_BOUND ? score + ply : score;
+        }
+        if (depth == 0 || ply >= MAX_PLY)
+            return quiescence(ply, alpha, beta);
+
+        int alphaOriginal = alpha;
+        int tableMove = PackedMove.NONE;
+        long entry = table.probe(position.key());
+        if (entry != TranspositionTable.NO_ENTRY) {
+            tableMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT || bound == TranspositionTable.LOWER && score >= beta
+                        || bound == TranspositionTable.UPPER && score <= alpha)
+                    return score;
+            }
+        }
+
+        MoveList list = lists[ply];
+        MoveGenerator.generateLegal(position, list);
+        if (list.size() == 0)
+            return position.inCheck(position.sideToMove()) ? -MATE + ply : DRAW;
+        int side = position.sideToMove();
+        MovePicker picker = pickers[ply];
+        picker.init(position, list, tableMove, killers[ply][0], killers[ply][1], history[side]);
+
+        int best = -INFINITE;
+        int bestMove = PackedMove.NONE;
+        int searched = 0;
+        for (int move = picker.next(); move != PackedMove.NONE; move = picker.next()) {
+            play(move);
+            int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+            undo();
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        if (!stopped)
+                            recordCutoff(move, side, depth, ply, searched);
+                        break;
+                    }
+                }
+            }
+            searched++;
+        }
+        if (!stopped) {
+            int bound = best >= beta ? TranspositionTable.LOWER
+                    : best > alphaOriginal ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+            table.store(position.key(), bestMove, toTable(best, ply), depth, bound);
+        }
+        return best;
+    }
+
+    /**
+     * Search only the captures of a position, until it is quiet enough for its
+     * static score to be trusted.
+     *
+     * @param ply   an int, the distance from the root
+     * @param alpha an int, the score the side to move is already sure of
+     * @param beta  an int, the score the opponent is already sure of
+     * @return      an int, the score for the side to move
+     */
+    private int quiescence(int ply, int alpha, int beta) {
+        if ((++nodes & CHECK_INTERVAL) == 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return DRAW;
+        if (ply >= MAX_PLY)
+            return evaluate();
+
+        int side = position.sideToMove();
+        boolean inCheck = position.inCheck(side);
+        int best = -INFINITE;
+        if (!inCheck) {
+            best = evaluate();
+            if (best >= beta)
+                return best;
+            alpha = Math.max(alpha, best);
+        }
+
+        MoveList list = lists[ply];
+        MoveGenerator.generateLegal(position, list);
+        if (list.size() == 0 && inCheck)
+            return -MATE + ply;
+        MovePicker picker = pickers[ply];
+        picker.init(position, list, PackedMove.NONE, PackedMove.NONE, PackedMove.NONE, history[side]);
+        for (int move = picker.next(); move != PackedMove.NONE; move = picker.next()) {
+            if (!inCheck) {
+                // the captures come first, so the rest are quiet moves
+                if (!MovePicker.isNoisy(move))
+                    break;
+                if (See.see(position, move, seeGain) < 0)
+                    continue;
+            }
+            play(move);
+            int score = -quiescence(ply + 1, -beta, -alpha);
+            undo();
+            if (score > best) {
+                best = score;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta)
+                        break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Make a move on the position, and on the network's accumulators if there is one.
+     *
+     * @param move  an int, the packed move
+     */
+    private void play(int move) {
+        if (accumulator != null)
+            accumulator.push(position, move);
+        position.makeMove(move);
+    }
+
+    /**
+     * Take back the last move played.
+     */
+    private void undo() {
+        position.unmakeMove();
+        if (accumulator != null)
+            accumulator.pop();
+    }
+
+    /**
+     * Score the position for the side to move, with the network if there is one.
+     *
+     * @return  an int, the score in centipawns
+     */
+    private int evaluate() {
+        if (accumulator != null)
+            return accumulator.evaluate(position.sideToMove());
+        return Evaluator.evaluate(position, pawns);
+    }
+
+    /**
+     * Convert a score found at a ply into one relative to the position, for the
+     * table. A mate n plies from the root is n - ply plies from the position.
+     *
+     * @param score an int, the score relative to the root
+     * @param ply   an int, the distance from the root
+     * @return      an int, the score to store
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= MATE_BOUND)
+            return score + ply;
+        if (score <= -MATE_BOUND)
+            return score - ply;
+        return score;
+    }
+
+    /**
+     * Convert a stored score back into one relative to the root.
+     *
+     * @param score an int, the stored score
+     * @param ply   an int, the distance from the root
+     * @return      an int, the score relative to the root
+     */
+    private static int fromTable(int score, int ply) {
+        if (score >= MATE_BOUND)
+            return score - ply;
+        if (score <= -MATE_BOUND)
+            return score + ply;
+        return score;
+    }
+
+    /**
+     * Count a beta cutoff, and remember a quiet move that caused it as a killer
+     * of its ply and in the history of its side.
+     *
+     * @param move      an int, the packed move that caused the cutoff
+     * @param side      an int, the color that played it
+     * @param depth     an int, the remaining depth of the node
+     * @param ply       an int, the distance of the node from the root
+     * @param searched  an int, the number of moves searched before it
+     */
+    private void recordCutoff(int move, int side, int depth, int ply, int searched) {
+        cutoffs++;
+        if (searched == 0)
+            firstMoveCutoffs++;
+        if (MovePicker.isNoisy(move))
+            return;
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int[] scores = history[side][PackedMove.from(move)];
+        scores[PackedMove.to(move)] += depth * depth;
+        if (scores[PackedMove.to(move)] > HISTORY_LIMIT) {
+            for (int[] fromHistory : history[side]) {
+                for (int to = 0; to < 64; to++)
+                    fromHistory[to] /= 2;
+            }
+        }
+    }
+
+    /**
+     * The outcome of a search.
+     *
+     * @param move        an int, the best move (see PackedMove), NONE if there are no legal moves
+     * @param score       an int, the score of the move in centipawns for the side to move
+     * @param depth       an int, the depth of the last completed iteration
+     * @param nodes       a long, the number of positions searched
+     * @param nanos       a long, the time taken in nanoseconds
+     * @param cutoffRate  a double, the share of beta cutoffs caused by the first move searched
+     */
+    public record Result(int move, int score, int depth, long nodes, long nanos, double cutoffRate) {
+
+        /**
+         * @return  a double, positions searched per second
+         */
+        public double nodesPerSecond() {
+            return nodes * 1e9 / Math.max(1, nanos);
+        }
+
+        /**
+         * @return  a String describing the result
+         */
+        @Override
+        public String toString() {
+            return String.format("%s score %d depth %d nodes %d (%.0f nodes/s, %.1f%% first move cutoffs)",
+                    PackedMove.toString(move), score, depth, nodes, nodesPerSecond(), 100 * cutoffRate);
+        }
+    }
+}
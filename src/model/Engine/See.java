@@ -0,0 +1,88 @@
+package model.Engine;
+
+import model.PackedMove;
+import model.Position;
+
+import static model.Position.*;
+
+/**
+ * This class works out the material a capture wins or loses once every piece
+ * that can join in on the square has captured in turn, cheapest first (static
+ * exchange evaluation). Nothing is played on the board: the attackers of both
+ * sides come from Position.attackersTo, and each capture just takes the
+ * capturing piece out of the occupancy, which uncovers any slider behind it.
+ *
+ * Either side may stop capturing when going on would lose more, which is
+ * resolved backwards from the end of the sequence. A search passes its own
+ * buffer for the sequence, so the exchanges of quiescence allocate nothing.
+ */
+public final class See {
+    // the longest possible sequence: every piece of both sides captures once
+    public static final int MAX_CAPTURES = 32;
+
+    private See() {
+    }
+
+    /**
+     * Evaluate the exchange a move starts.
+     *
+     * @param position  the Position before the move
+     * @param move      an int, the packed move, usually a capture
+     * @return          an int, the material won in centipawns, negative if the move loses material
+     */
+    public static int see(Position position, int move) {
+        return see(position, move, new int[MAX_CAPTURES]);
+    }
+
+    /**
+     * Evaluate the exchange a move starts, working in a buffer of the caller.
+     *
+     * @param position  the Position before the move
+     * @param move      an int, the packed move, usually a capture
+     * @param gain      an int array of MAX_CAPTURES, overwritten, used by one thread only
+     * @return          an int, the material won in centipawns, negative if the move loses material
+     */
+    public static int see(Position position, int move, int[] gain) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        gain[0] = 0;
+        long occupied = position.occupied() ^ bit(from);
+        int nextVictim = typeOf(position.pieceAt(from));
+        if (PackedMove.isEnPassant(move)) {
+            occupied ^= bit(PackedMove.enPassantVictim(move));
+            gain[0] = Evaluator.PIECE_VALUES[PAWN];
+        } else if (PackedMove.isCapture(move)) {
+            gain[0] = Evaluator.PIECE_VALUES[typeOf(position.pieceAt(to))];
+        }
+        if (PackedMove.isPromotion(move)) {
+            nextVictim = PackedMove.promotion(move);
+            gain[0] += Evaluator.PIECE_VALUES[nextVictim] - Evaluator.PIECE_VALUES[PAWN];
+        }
+
+        int side = colorOf(position.pieceAt(from)) ^ 1;
+        long attackers = position.attackersTo(to, occupied) & occupied;
+        int depth = 0;
+        while (depth < MAX_CAPTURES - 1) {
+            long ours = attackers & position.occupancy(side);
+            if (ours == 0)
+                break;
+            int type = PAWN;
+            while ((ours & position.pieces(side, type)) == 0)
+                type++;
+            // the King can only capture if nothing can take it back
+            if (type == KING && (attackers & position.occupancy(side ^ 1)) != 0)
+                break;
+            depth++;
+            gain[depth] = Evaluator.PIECE_VALUES[nextVictim] - gain[depth - 1];
+            occupied ^= Long.lowestOneBit(ours & position.pieces(side, type));
+            attackers = position.attackersTo(to, occupied) & occupied;
+            nextVictim = type;
+            side ^= 1;
+        }
+        while (depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+            depth--;
+        }
+        return gain[0];
+    }
+}
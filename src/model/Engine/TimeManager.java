@@ -0,0 +1,83 @@
+package model.Engine;
+
+/**
+ * This class decides how long the engine may think about one move, given what
+ * is left on its clock. It gives two deadlines:
+ *
+ *   soft   after an iteration completes past it, no deeper one is started,
+ *          since the next iteration usually takes several times as long
+ *   hard   the search is aborted mid-iteration when it is reached, and
+ *          answers with the last completed depth
+ *
+ * Without moves to go (a sudden death clock, like the 180 seconds of
+ * competitive mode) the remaining time is spread over MOVES_TO_GO more moves,
+ * so the budget shrinks as the clock runs down. The hard deadline is a few
+ * soft ones but never more than a fraction of the clock, and a safety margin
+ * is always kept back for the time it takes to answer, so the engine's side
+ * doesn't run out of time.
+ */
+public class TimeManager {
+    // the moves the remaining time is spread over when the clock doesn't say
+    public static final int MOVES_TO_GO = 30;
+    // kept back on the clock for the GUI to play the move and restart the clocks
+    public static final long SAFETY_MILLIS = 50;
+    // the hard deadline is at most this many soft ones
+    private static final int HARD_FACTOR = 4;
+    // and never more than this fraction of what is left on the clock
+    private static final int HARD_SHARE = 5;
+    private static final long MIN_MILLIS = 1;
+
+    /**
+     * The deadlines of one move, in milliseconds from the start of the search.
+     *
+     * @param softMillis    a long, no iteration is started after it
+     * @param hardMillis    a long, the search is aborted at it
+     */
+    public record Budget(long softMillis, long hardMillis) {
+    }
+
+    private TimeManager() {
+    }
+
+    /**
+     * Allocate the time of a move on a sudden death clock.
+     *
+     * @param remainingMillis   a long, the time left on the engine's clock in milliseconds
+     * @param incrementMillis   a long, the time added to the clock after each move in milliseconds
+     * @return                  the Budget of the move
+     */
+    public static Budget allocate(long remainingMillis, long incrementMillis) {
+        return allocate(remainingMillis, incrementMillis, 0);
+    }
+
+    /**
+     * Allocate the time of a move.
+     *
+     * @param remainingMillis   a long, the time left on the engine's clock in milliseconds
+     * @param incrementMillis   a long, the time added to the clock after each move in milliseconds
+     * @param movesToGo         an int, the moves until the clock is refilled, 0 for sudden death
+     * @return                  the Budget of the move
+     */
+    public static Budget allocate(long remainingMillis, long incrementMillis, int movesToGo) {
+        long usable = Math.max(MIN_MILLIS, remainingMillis - SAFETY_MILLIS);
+        int moves = movesToGo > 0 ? Math.min(movesToGo, MOVES_TO_GO) : MOVES_TO_GO;
+        // most of the increment comes back after the move, so it can be spent now
+        long soft = usable / moves + incrementMillis * 3 / 4;
+        long hard = Math.min(soft * HARD_FACTOR, usable / HARD_SHARE + incrementMillis * 3 / 4);
+        // the increment is only added after the move, the move itself must fit in what is left
+        hard = Math.max(MIN_MILLIS, Math.min(hard, usable));
+        soft = Math.max(MIN_MILLIS, Math.min(soft, hard));
+        return new Budget(soft, hard);
+    }
+
+    /**
+     * How far a move overran its budget.
+     *
+     * @param budget        the Budget of the move
+     * @param elapsedNanos  a long, the time the move took in nanoseconds
+     * @return              a long, the milliseconds past the hard deadline, negative if it was met
+     */
+    public static long overshootMillis(Budget budget, long elapsedNanos) {
+        return elapsedNanos / 1_000_000 - budget.hardMillis();
+    }
+}
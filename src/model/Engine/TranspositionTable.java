@@ -0,0 +1,197 @@
+package model.Engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class remembers the results of searched positions by Zobrist key, so a
+ * position reached again through another move order is not searched twice. It
+ * is a fixed-size, power-of-two table in a flat long[], two longs per entry, and
+ * can be shared by any number of search threads without locks.
+ *
+ * An entry packs the best move, score, depth and bound into one long (the data)
+ * and stores the key XORed with the data next to it. A reader XORs the two back
+ * together and only trusts the entry if that gives its own key. Two threads
+ * writing one entry at the same time can leave the halves of different writes
+ * side by side, but such a torn entry fails the check and reads as a miss, so
+ * no lock is needed.
+ *
+ * Data layout:
+ *
+ *   bits  0 - 18   the best move (see PackedMove)
+ *   bits 19 - 34   the score, offset by 32768
+ *   bits 35 - 42   the depth searched
+ *   bits 43 - 44   the bound: EXACT, LOWER or UPPER
+ */
+public class TranspositionTable {
+    public static final int DEFAULT_MEGABYTES = 16;
+    public static final long NO_ENTRY = 0L;
+
+    // the score is exact, at least (a beta cutoff) or at most (no move beat alpha)
+    public static final int EXACT = 1;
+    public static final int LOWER = 2;
+    public static final int UPPER = 3;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int SCORE_OFFSET = 32768;
+
+    private final long[] table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /**
+     * The constructor allocates the table.
+     *
+     * @param megabytes an int, the size of the table in MB, rounded down to a power of two entries
+     */
+    public TranspositionTable(int megabytes) {
+        if (megabytes < 1)
+            throw new IllegalArgumentException("a transposition table needs at least 1 MB");
+        long entries = Long.highestOneBit((long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        table = new long[(int) Math.min(entries, 1 << 29) * 2];
+        mask = table.length / 2 - 1;
+    }
+
+    /**
+     * Look a position up.
+     *
+     * @param key   a long, the Zobrist key of the position
+     * @return      a long, the entry's data or NO_ENTRY if the position is not stored
+     */
+    public long probe(long key) {
+        int slot = ((int) key & mask) << 1;
+        long data = table[slot + 1];
+        if ((table[slot] ^ data) == key && data != NO_ENTRY) {
+            hits.increment();
+            return data;
+        }
+        misses.increment();
+        if (data != NO_ENTRY)
+            collisions.increment();
+        return NO_ENTRY;
+    }
+
+    /**
+     * Store the result of a search. A deeper result for the same position is
+     * kept unless the new one is exact, any other position in the slot is
+     * replaced.
+     *
+     * @param key   a long, the Zobrist key of the position
+     * @param move  an int, the best move or PackedMove.NONE
+     * @param score an int, the score, with mates relative to this position
+     * @param depth an int, the depth searched
+     * @param bound an int, EXACT, LOWER or UPPER
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int slot = ((int) key & mask) << 1;
+        long old = table[slot + 1];
+        if ((table[slot] ^ old) == key && old != NO_ENTRY && depth(old) > depth && bound != EXACT)
+            return;
+        long data = move | (long) (score + SCORE_OFFSET) << 19 | (long) Math.min(depth, 255) << 35
+                | (long) bound << 43;
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+        stores.increment();
+    }
+
+    /**
+     * Empty the table and reset the counters.
+     */
+    public void clear() {
+        Arrays.fill(table, 0L);
+        hits.reset();
+        misses.reset();
+        collisions.reset();
+        stores.reset();
+    }
+
+    /**
+     * a getter for the move of an entry
+     * @param data  a long, the entry returned by probe
+     * @return      an int, the packed move
+     */
+    public static int move(long data) {
+        return (int) (data & 0x7FFFF);
+    }
+
+    /**
+     * a getter for the score of an entry
+     * @param data  a long, the entry returned by probe
+     * @return      an int, the score
+     */
+    public static int score(long data) {
+        return (int) (data >>> 19 & 0xFFFF) - SCORE_OFFSET;
+    }
+
+    /**
+     * a getter for the depth of an entry
+     * @param data  a long, the entry returned by probe
+     * @return      an int, the depth searched
+     */
+    public static int depth(long data) {
+        return (int) (data >>> 35 & 0xFF);
+    }
+
+    /**
+     * a getter for the bound of an entry
+     * @param data  a long, the entry returned by probe
+     * @return      an int, EXACT, LOWER or UPPER
+     */
+    public static int bound(long data) {
+        return (int) (data >>> 43 & 3);
+    }
+
+    /**
+     * a getter for the number of entries
+     * @return  an int, a power of two
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * a getter for the number of probes that found their position
+     * @return  a long
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * a getter for the number of probes that did not find their position
+     * @return  a long, including collisions
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * a getter for the number of probes that found another position (or a
+     * torn write) in their slot
+     * @return  a long
+     */
+    public long collisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * a getter for the number of entries written
+     * @return  a long
+     */
+    public long stores() {
+        return stores.sum();
+    }
+
+    /**
+     * @return  a String with the size and counters
+     */
+    @Override
+    public String toString() {
+        long probes = hits() + misses();
+        return String.format("tt %d entries, %d probes, %.1f%% hits, %d collisions, %d stores", capacity(), probes,
+                probes == 0 ? 0.0 : 100.0 * hits() / probes, collisions(), stores());
+    }
+}
@@ -0,0 +1,306 @@
+package model;
+
+import static model.Position.*;
+
+/**
+ * This class generates the moves of a color into a MoveList (see MoveList and
+ * PackedMove). It has two modes:
+ *
+ * Pseudo-legal moves follow the rules of their piece, but may leave the
+ * mover's own king in check.
+ *
+ * Legal moves never do. Before emitting anything the generator finds the
+ * pieces giving check and the pieces pinned to the king, once per position.
+ * In check, every move but a king move must capture the checker or block it,
+ * and in double check only the king can move. A pinned piece may only move
+ * along the line through its king and the pinning piece. A king move is legal
+ * if its destination is not attacked once the king has left its square. Only
+ * en passant, which removes two pawns from a row at once, is tested by
+ * replaying the slider lookups.
+ *
+ * Castling is generated the same way in both modes: the king may not start in,
+ * pass through or land in check.
+ */
+public final class MoveGenerator {
+    private static final long BACK_RANKS = 0xFF000000000000FFL;
+    private static final int[] PROMOTIONS = {QUEEN, ROOK, BISHOP, KNIGHT};
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Fill a list with every pseudo-legal move of the side to move. The list is
+     * cleared first.
+     *
+     * @param position  the Position to generate moves for
+     * @param list      the MoveList to fill
+     */
+    public static void generate(Position position, MoveList list) {
+        generate(position, position.sideToMove(), list);
+    }
+
+    /**
+     * Fill a list with every pseudo-legal move one color could make if it were
+     * its turn. En passant is only possible for the side to move. The list is
+     * cleared first.
+     *
+     * @param position  the Position to generate moves for
+     * @param color     an int, WHITE or BLACK
+     * @param list      the MoveList to fill
+     */
+    public static void generate(Position position, int color, MoveList list) {
+        fill(position, color, list, false);
+    }
+
+    /**
+     * Fill a list with every legal move of the side to move. The list is
+     * cleared first, and is left empty on checkmate or stalemate.
+     *
+     * @param position  the Position to generate moves for
+     * @param list      the MoveList to fill
+     */
+    public static void generateLegal(Position position, MoveList list) {
+        generateLegal(position, position.sideToMove(), list);
+    }
+
+    /**
+     * Fill a list with every legal move one color could make if it were its
+     * turn. En passant is only possible for the side to move. The list is
+     * cleared first.
+     *
+     * @param position  the Position to generate moves for
+     * @param color     an int, WHITE or BLACK
+     * @param list      the MoveList to fill
+     */
+    public static void generateLegal(Position position, int color, MoveList list) {
+        fill(position, color, list, true);
+    }
+
+    /**
+     * Fill a list with the moves of a color, legal or pseudo-legal.
+     *
+     * @param position  the Position to generate moves for
+     * @param color     an int, WHITE or BLACK
+     * @param list      the MoveList to fill
+     * @param legal     a boolean, true to leave out moves that expose the king
+     */
+    private static void fill(Position position, int color, MoveList list, boolean legal) {
+        list.clear();
+        long enemy = position.occupancy(color ^ 1);
+        long kings = position.pieces(color, KING);
+        int king = Long.numberOfTrailingZeros(kings);
+        // a loaded game may have no king, then there is nothing to protect
+        legal &= kings != 0;
+
+        long targetMask = ~position.occupancy(color);
+        long pinned = 0L;
+        long checkers = 0L;
+        if (legal) {
+            checkers = position.attackersTo(king, position.occupied()) & enemy;
+            pinned = pinnedPieces(position, color, king);
+            if (checkers != 0) {
+                addKingMoves(position, color, king, list, true);
+                // in double check only the king can move
+                if ((checkers & (checkers - 1)) != 0)
+                    return;
+                targetMask &= checkers | Attacks.between(king, Long.numberOfTrailingZeros(checkers));
+            }
+        }
+
+        generatePawnMoves(position, color, king, targetMask, pinned, checkers, legal, list);
+        for (int type = KNIGHT; type <= QUEEN; type++) {
+            for (long pieces = position.pieces(color, type); pieces != 0; pieces &= pieces - 1) {
+                int from = Long.numberOfTrailingZeros(pieces);
+                long targets = position.attacks(from) & targetMask;
+                if ((pinned & bit(from)) != 0)
+                    targets &= Attacks.line(king, from);
+                addMoves(from, targets, enemy, list);
+            }
+        }
+        if (checkers == 0) {
+            for (long pieces = kings; pieces != 0; pieces &= pieces - 1)
+                addKingMoves(position, color, Long.numberOfTrailingZeros(pieces), list, legal);
+            generateCastles(position, color, list);
+        }
+    }
+
+    /**
+     * Find the pieces of a color that stand alone between their king and an
+     * enemy rook, bishop or queen. Moving one off that line would expose the king.
+     *
+     * @param position  the Position to look at
+     * @param color     an int, the color of the king
+     * @param king      an int, the king square
+     * @return          a long, the squares of the pinned pieces
+     */
+    private static long pinnedPieces(Position position, int color, int king) {
+        int enemyColor = color ^ 1;
+        long enemy = position.occupancy(enemyColor);
+        long queens = position.pieces(enemyColor, QUEEN);
+        // look through our own pieces to find the sliders lined up with the king
+        long pinners = (Attacks.rook(king, enemy) & (position.pieces(enemyColor, ROOK) | queens))
+                | (Attacks.bishop(king, enemy) & (position.pieces(enemyColor, BISHOP) | queens));
+        long pinned = 0L;
+        for (; pinners != 0; pinners &= pinners - 1) {
+            long blockers = Attacks.between(king, Long.numberOfTrailingZeros(pinners)) & position.occupied();
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0)
+                pinned |= blockers & position.occupancy(color);
+        }
+        return pinned;
+    }
+
+    /**
+     * Add a move to every target square, flagging the ones that capture.
+     *
+     * @param from      an int, the square the piece moves from
+     * @param targets   a long, the squares the piece can move to
+     * @param enemy     a long, the squares holding enemy pieces
+     * @param list      the MoveList to fill
+     */
+    private static void addMoves(int from, long targets, long enemy, MoveList list) {
+        for (; targets != 0; targets &= targets - 1) {
+            int to = Long.numberOfTrailingZeros(targets);
+            list.add(PackedMove.of(from, to, (enemy & bit(to)) != 0 ? PackedMove.CAPTURE : 0));
+        }
+    }
+
+    /**
+     * Add the moves of a king. When legal, squares that would be attacked once
+     * the king has left its own square are skipped, so the king can't step
+     * back along the line of a checking slider.
+     *
+     * @param position  the Position to generate moves for
+     * @param color     an int, the color of the king
+     * @param king      an int, the king square
+     * @param list      the MoveList to fill
+     * @param legal     a boolean, true to skip attacked squares
+     */
+    private static void addKingMoves(Position position, int color, int king, MoveList list, boolean legal) {
+        long enemy = position.occupancy(color ^ 1);
+        long targets = Attacks.king(king) & ~position.occupancy(color);
+        if (legal) {
+            long occupied = position.occupied() ^ bit(king);
+            for (long squares = targets; squares != 0; squares &= squares - 1) {
+                int to = Long.numberOfTrailingZeros(squares);
+                if ((position.attackersTo(to, occupied) & enemy) != 0)
+                    targets &= ~bit(to);
+            }
+        }
+        addMoves(king, targets, enemy, list);
+    }
+
+    /**
+     * Add the pushes, double pushes, captures, en passant captures and
+     * promotions of every pawn. Pawns only move two squares from their start row.
+     *
+     * @param position      the Position to generate moves for
+     * @param color         an int, the color to move
+     * @param king          an int, the square of the color's king
+     * @param targetMask    a long, the squares a move may end on
+     * @param pinned        a long, the pieces pinned to the king
+     * @param checkers      a long, the pieces giving check
+     * @param legal         a boolean, true if only legal moves are wanted
+     * @param list          the MoveList to fill
+     */
+    private static void generatePawnMoves(Position position, int color, int king, long targetMask, long pinned,
+                                          long checkers, boolean legal, MoveList list) {
+        long empty = ~position.occupied();
+        long enemy = position.occupancy(color ^ 1);
+        int forward = color == WHITE ? -8 : 8;
+        int startRow = color == WHITE ? 6 : 1;
+        int epSquare = color == position.sideToMove() ? position.epSquare() : NO_SQUARE;
+        // a pawn left on a back rank (only possible in a loaded game) cannot move
+        for (long pawns = position.pieces(color, PAWN) & ~BACK_RANKS; pawns != 0; pawns &= pawns - 1) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            long allowed = (pinned & bit(from)) != 0 ? targetMask & Attacks.line(king, from) : targetMask;
+            int to = from + forward;
+            if ((empty & bit(to)) != 0) {
+                if ((allowed & bit(to)) != 0)
+                    addPawnMove(from, to, 0, list);
+                int doublePush = to + forward;
+                if (row(from) == startRow && (empty & allowed & bit(doublePush)) != 0)
+                    list.add(PackedMove.of(from, doublePush, PackedMove.DOUBLE_PUSH));
+            }
+            long attacks = Attacks.pawn(color, from);
+            for (long captures = attacks & enemy & allowed; captures != 0; captures &= captures - 1)
+                addPawnMove(from, Long.numberOfTrailingZeros(captures), PackedMove.CAPTURE, list);
+            if (epSquare != NO_SQUARE && (attacks & bit(epSquare)) != 0) {
+                int move = PackedMove.of(from, epSquare, PackedMove.CAPTURE | PackedMove.EN_PASSANT);
+                if (!legal || isLegalEnPassant(position, color, king, move, checkers))
+                    list.add(move);
+            }
+        }
+    }
+
+    /**
+     * Check that an en passant capture does not leave the king in check. Both
+     * pawns leave the row at once, so the capture can uncover a slider that
+     * neither pawn was pinned to on its own.
+     *
+     * @param position  the Position to look at
+     * @param color     an int, the color capturing
+     * @param king      an int, the square of the color's king
+     * @param move      an int, the packed en passant move
+     * @param checkers  a long, the pieces giving check
+     * @return          a boolean, true if the capture is legal
+     */
+    private static boolean isLegalEnPassant(Position position, int color, int king, int move, long checkers) {
+        int enemyColor = color ^ 1;
+        long victim = bit(PackedMove.enPassantVictim(move));
+        // a knight or pawn giving check must be the captured pawn
+        long leapers = position.pieces(enemyColor, KNIGHT) | position.pieces(enemyColor, PAWN);
+        if ((checkers & leapers & ~victim) != 0)
+            return false;
+        long occupied = (position.occupied() ^ bit(PackedMove.from(move)) ^ victim) | bit(PackedMove.to(move));
+        long queens = position.pieces(enemyColor, QUEEN);
+        return (Attacks.rook(king, occupied) & (position.pieces(enemyColor, ROOK) | queens)) == 0
+                && (Attacks.bishop(king, occupied) & (position.pieces(enemyColor, BISHOP) | queens)) == 0;
+    }
+
+    /**
+     * Add a pawn move, or one move per promotion piece if the pawn reaches
+     * the far row.
+     *
+     * @param from  an int, the square the pawn moves from
+     * @param to    an int, the square the pawn moves to
+     * @param flags an int, CAPTURE or 0
+     * @param list  the MoveList to fill
+     */
+    private static void addPawnMove(int from, int to, int flags, MoveList list) {
+        if ((BACK_RANKS & bit(to)) != 0) {
+            for (int type : PROMOTIONS)
+                list.add(PackedMove.promotion(from, to, type, flags));
+        } else {
+            list.add(PackedMove.of(from, to, flags));
+        }
+    }
+
+    /**
+     * Add the castles the color still has the right to make. The squares
+     * between king and rook must be empty and the king may not start in,
+     * pass through or land in check.
+     *
+     * @param position  the Position to generate moves for
+     * @param color     an int, the color to move
+     * @param list      the MoveList to fill
+     */
+    private static void generateCastles(Position position, int color, MoveList list) {
+        int rights = (position.castlingRights() >> (color * 2)) & 3;
+        if (rights == 0)
+            return;
+        int king = color == WHITE ? WHITE_KING_HOME : BLACK_KING_HOME;
+        int enemyColor = color ^ 1;
+        if (position.pieceAt(king) != piece(color, KING) || position.isAttacked(king, enemyColor))
+            return;
+        long occupied = position.occupied();
+        int rook = piece(color, ROOK);
+        if ((rights & 1) != 0 && position.pieceAt(king + 3) == rook &&
+                (Attacks.between(king, king + 3) & occupied) == 0 &&
+                !position.isAttacked(king + 1, enemyColor) && !position.isAttacked(king + 2, enemyColor))
+            list.add(PackedMove.of(king, king + 2, PackedMove.CASTLE));
+        if ((rights & 2) != 0 && position.pieceAt(king - 4) == rook &&
+                (Attacks.between(king, king - 4) & occupied) == 0 &&
+                !position.isAttacked(king - 1, enemyColor) && !position.isAttacked(king - 2, enemyColor))
+            list.add(PackedMove.of(king, king - 2, PackedMove.CASTLE));
+    }
+}
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * This class is a reusable list of packed moves (see PackedMove) backed by a
+ * fixed int array. The move generator fills it in place, so a caller that keeps
+ * one MoveList per search depth generates moves without creating any garbage.
+ */
+public class MoveList {
+    // no legal chess position has more than 218 moves
+    public static final int MAX_MOVES = 256;
+    private final int[] moves = new int[MAX_MOVES];
+    private int size;
+
+    /**
+     * Add a move to the end of the list.
+     *
+     * @param move  an int, the packed move
+     */
+    public void add(int move) {
+        moves[size++] = move;
+    }
+
+    /**
+     * a getter for the move at an index
+     * @param index an int, between 0 and size() - 1
+     * @return      an int, the packed move
+     */
+    public int get(int index) {
+        return moves[index];
+    }
+
+    /**
+     * Swap two moves, used to sort the list in place.
+     *
+     * @param i an int, the index of the first move
+     * @param j an int, the index of the second move
+     */
+    public void swap(int i, int j) {
+        int move = moves[i];
+        moves[i] = moves[j];
+        moves[j] = move;
+    }
+
+    /**
+     * a getter for the number of moves in the list
+     * @return  an int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empty the list so that it can be filled again.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,176 @@
+package model;
+
+/**
+ * This class packs a move into a single int so that move generation and search
+ * never need to allocate move objects. The layout is:
+ *
+ *   bits  0 - 5    the square the piece moves from (see Position)
+ *   bits  6 - 11   the square the piece moves to
+ *   bits 12 - 14   the piece type a pawn promotes to, 0 if it does not promote
+ *   bits 15 - 18   flags: capture, double pawn push, en passant and castle
+ *
+ * A castle is stored as the king's move, two squares towards the rook.
+ * NONE (0) is never a real move, since it would go from a square to itself.
+ */
+public final class PackedMove {
+    public static final int NONE = 0;
+
+    public static final int CAPTURE = 1 << 15;
+    public static final int DOUBLE_PUSH = 1 << 16;
+    public static final int EN_PASSANT = 1 << 17;
+    public static final int CASTLE = 1 << 18;
+
+    private PackedMove() {
+    }
+
+    /**
+     * Pack a move.
+     *
+     * @param from  an int, the square the piece moves from
+     * @param to    an int, the square the piece moves to
+     * @param flags an int, any of CAPTURE, DOUBLE_PUSH, EN_PASSANT and CASTLE
+     * @return      an int, the packed move
+     */
+    public static int of(int from, int to, int flags) {
+        return from | (to << 6) | flags;
+    }
+
+    /**
+     * Pack a pawn promotion.
+     *
+     * @param from      an int, the square the pawn moves from
+     * @param to        an int, the square the pawn moves to
+     * @param type      an int, the piece type to promote to (KNIGHT through QUEEN)
+     * @param flags     an int, CAPTURE or 0
+     * @return          an int, the packed move
+     */
+    public static int promotion(int from, int to, int type, int flags) {
+        return from | (to << 6) | (type << 12) | flags;
+    }
+
+    /**
+     * a getter for the from square
+     * @param move  an int, the packed move
+     * @return      an int, the square index
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     * a getter for the to square
+     * @param move  an int, the packed move
+     * @return      an int, the square index
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * a getter for the promotion piece type
+     * @param move  an int, the packed move
+     * @return      an int, KNIGHT through QUEEN, or 0 if the move is not a promotion
+     */
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    /**
+     * a getter for the promotion flag
+     * @param move  an int, the packed move
+     * @return      a boolean, true if a pawn promotes
+     */
+    public static boolean isPromotion(int move) {
+        return (move & (7 << 12)) != 0;
+    }
+
+    /**
+     * a getter for the capture flag, also set for en passant
+     * @param move  an int, the packed move
+     * @return      a boolean, true if the move captures
+     */
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    /**
+     * a getter for the double push flag
+     * @param move  an int, the packed move
+     * @return      a boolean, true if a pawn moves two squares
+     */
+    public static boolean isDoublePush(int move) {
+        return (move & DOUBLE_PUSH) != 0;
+    }
+
+    /**
+     * a getter for the en passant flag
+     * @param move  an int, the packed move
+     * @return      a boolean, true if the move captures en passant
+     */
+    public static boolean isEnPassant(int move) {
+        return (move & EN_PASSANT) != 0;
+    }
+
+    /**
+     * a getter for the castle flag
+     * @param move  an int, the packed move
+     * @return      a boolean, true if the move is a castle
+     */
+    public static boolean isCastle(int move) {
+        return (move & CASTLE) != 0;
+    }
+
+    /**
+     * Get the square of the pawn captured en passant, which is beside the
+     * capturing pawn's start square, on the column it moves to.
+     *
+     * @param move  an int, the packed en passant move
+     * @return      an int, the square index
+     */
+    public static int enPassantVictim(int move) {
+        return (from(move) & ~7) | (to(move) & 7);
+    }
+
+    /**
+     * a getter for the rook's start square in a castle
+     * @param move  an int, the packed castle move
+     * @return      an int, the square index
+     */
+    public static int castleRookFrom(int move) {
+        return to(move) > from(move) ? from(move) + 3 : from(move) - 4;
+    }
+
+    /**
+     * a getter for the rook's end square in a castle
+     * @param move  an int, the packed castle move
+     * @return      an int, the square index
+     */
+    public static int castleRookTo(int move) {
+        return (from(move) + to(move)) >> 1;
+    }
+
+    /**
+     * Format a move in coordinate notation, for example "e2e4" or "e7e8q".
+     *
+     * @param move  an int, the packed move
+     * @return      a String describing the move
+     */
+    public static String toString(int move) {
+        if (move == NONE)
+            return "none";
+        String name = squareName(from(move)) + squareName(to(move));
+        if (isPromotion(move))
+            name += "pnbrqk".charAt(promotion(move));
+        return name;
+    }
+
+    /**
+     * Get the algebraic name of a square, for example "e4".
+     *
+     * @param sq    an int, the square index
+     * @return      a String, the square name
+     */
+    public static String squareName(int sq) {
+        return "" + (char) ('a' + Position.column(sq)) + (char) ('8' - Position.row(sq));
+    }
+}
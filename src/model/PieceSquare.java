@@ -0,0 +1,149 @@
+package model;
+
+import static model.Position.*;
+
+/**
+ * This class holds the piece-square tables of the evaluation: what a piece is
+ * worth on each square, once for the middlegame and once for the endgame. The
+ * values include the piece's material and are signed, positive for white and
+ * negative for black, so a Position keeps the sum over its pieces up to date
+ * with one addition per piece put, removed or moved (see Position.put).
+ *
+ * Each side also adds a phase weight per minor and major piece. The phase
+ * starts at MAX_PHASE with all of them on the board and falls towards 0 as
+ * they are traded, and the evaluation blends the two scores by it.
+ *
+ * The tables are written from white's side with a8 first, the same order as
+ * the square indexes, and mirrored for black.
+ */
+public final class PieceSquare {
+    public static final int MAX_PHASE = 24;
+    // indexed by piece type
+    private static final int[] PHASE_WEIGHTS = {0, 1, 1, 2, 4, 0};
+    private static final int[] MIDDLEGAME_VALUES = {100, 320, 330, 500, 900, 0};
+    private static final int[] ENDGAME_VALUES = {120, 300, 320, 520, 920, 0};
+
+    private static final int[] PAWN_MIDDLEGAME = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             10,  10,  20,  30,  30,  20,  10,  10,
+              5,   5,  10,  25,  25,  10,   5,   5,
+              0,   0,   0,  20,  20,   0,   0,   0,
+              5,  -5, -10,   0,   0, -10,  -5,   5,
+              5,  10,  10, -20, -20,  10,  10,   5,
+              0,   0,   0,   0,   0,   0,   0,   0};
+    private static final int[] PAWN_ENDGAME = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+             80,  80,  80,  80,  80,  80,  80,  80,
+             50,  50,  50,  50,  50,  50,  50,  50,
+             30,  30,  30,  30,  30,  30,  30,  30,
+             15,  15,  15,  15,  15,  15,  15,  15,
+              5,   5,   5,   5,   5,   5,   5,   5,
+              0,   0,   0,   0,   0,   0,   0,   0,
+              0,   0,   0,   0,   0,   0,   0,   0};
+    private static final int[] KNIGHT = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20,   0,   0,   0,   0, -20, -40,
+            -30,   0,  10,  15,  15,  10,   0, -30,
+            -30,   5,  15,  20,  20,  15,   5, -30,
+            -30,   0,  15,  20,  20,  15,   0, -30,
+            -30,   5,  10,  15,  15,  10,   5, -30,
+            -40, -20,   0,   5,   5,   0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50};
+    private static final int[] BISHOP = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,   5,  10,  10,   5,   5, -10,
+            -10,   0,  10,  10,  10,  10,   0, -10,
+            -10,  10,  10,  10,  10,  10,  10, -10,
+            -10,   5,   0,   0,   0,   0,   5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20};
+    private static final int[] ROOK = {
+              0,   0,   0,   0,   0,   0,   0,   0,
+              5,  10,  10,  10,  10,  10,  10,   5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+             -5,   0,   0,   0,   0,   0,   0,  -5,
+              0,   0,   0,   5,   5,   0,   0,   0};
+    private static final int[] QUEEN = {
+            -20, -10, -10,  -5,  -5, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,   5,   5,   5,   0, -10,
+             -5,   0,   5,   5,   5,   5,   0,  -5,
+              0,   0,   5,   5,   5,   5,   0,  -5,
+            -10,   5,   5,   5,   5,   5,   0, -10,
+            -10,   0,   5,   0,   0,   0,   0, -10,
+            -20, -10, -10,  -5,  -5, -10, -10, -20};
+    // the King hides behind its pawns while there are pieces to attack it...
+    private static final int[] KING_MIDDLEGAME = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+             20,  20,   0,   0,   0,   0,  20,  20,
+             20,  30,  10,   0,   0,  10,  30,  20};
+    // ...and heads for the center once they are gone
+    private static final int[] KING_ENDGAME = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10,   0,   0, -10, -20, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  30,  40,  40,  30, -10, -30,
+            -30, -10,  20,  30,  30,  20, -10, -30,
+            -30, -30,   0,   0,   0,   0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50};
+
+    private static final int[][] MIDDLEGAME = new int[NUM_PIECES][64];
+    private static final int[][] ENDGAME = new int[NUM_PIECES][64];
+
+    static {
+        int[][] middlegameTables = {PAWN_MIDDLEGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_MIDDLEGAME};
+        int[][] endgameTables = {PAWN_ENDGAME, KNIGHT, BISHOP, ROOK, QUEEN, KING_ENDGAME};
+        for (int type = PAWN; type <= KING; type++) {
+            for (int sq = 0; sq < 64; sq++) {
+                MIDDLEGAME[piece(WHITE, type)][sq] = MIDDLEGAME_VALUES[type] + middlegameTables[type][sq];
+                ENDGAME[piece(WHITE, type)][sq] = ENDGAME_VALUES[type] + endgameTables[type][sq];
+                // a8 for white is a1 for black
+                MIDDLEGAME[piece(BLACK, type)][sq] = -MIDDLEGAME_VALUES[type] - middlegameTables[type][sq ^ 56];
+                ENDGAME[piece(BLACK, type)][sq] = -ENDGAME_VALUES[type] - endgameTables[type][sq ^ 56];
+            }
+        }
+    }
+
+    private PieceSquare() {
+    }
+
+    /**
+     * a getter for the middlegame value of a piece on a square
+     * @param piece an int, the piece code
+     * @param sq    an int, the square index
+     * @return      an int, the value in centipawns, negative for black
+     */
+    public static int middlegame(int piece, int sq) {
+        return MIDDLEGAME[piece][sq];
+    }
+
+    /**
+     * a getter for the endgame value of a piece on a square
+     * @param piece an int, the piece code
+     * @param sq    an int, the square index
+     * @return      an int, the value in centipawns, negative for black
+     */
+    public static int endgame(int piece, int sq) {
+        return ENDGAME[piece][sq];
+    }
+
+    /**
+     * a getter for how much a piece counts towards the game phase
+     * @param piece an int, the piece code
+     * @return      an int, 0 for pawns and kings
+     */
+    public static int phase(int piece) {
+        return PHASE_WEIGHTS[typeOf(piece)];
+    }
+}
@@ -1,7 +1,8 @@
 package model.Pieces;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import model.Attacks;
+import model.Position;
+
 import java.util.List;
 import java.util.Set;
 
@@ -50,20 +51,8 @@ public class Bishop extends Piece {
 	 */
 	@Override
 	public Set<List<Integer>> moveSet() {
-		Set<List<Integer>> moveSet = new HashSet<>();
-		for (int i = row + 1, j = col + 1; inBounds(i, j); i++, j++) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		for (int i = row + 1, j = col - 1; inBounds(i, j); i++, j--) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		for (int i = row - 1, j = col + 1; inBounds(i, j); i--, j++) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		for (int i = row - 1, j = col - 1; inBounds(i, j); i--, j--) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		return moveSet;
+		// Attacks on an empty board are every square along both diagonals.
+		return toMoveSet(Attacks.bishop(Position.square(row, col), 0L));
 	}
 
 	/**
@@ -1,7 +1,8 @@
 package model.Pieces;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import model.Attacks;
+import model.Position;
+
 import java.util.List;
 import java.util.Set;
 
@@ -68,24 +69,8 @@ public class King extends Piece{
 	 */
 	@Override
 	public Set<List<Integer>> moveSet() {
-		final Integer[][] moves = {
-				{row, col + 1},
-				{row, col - 1},
-				{row + 1, col},
-				{row + 1, col + 1},
-				{row + 1, col - 1},
-				{row - 1, col},
-				{row - 1, col + 1},
-				{row - 1, col - 1}
-		};
-		Set<List<Integer>> moveSet = new HashSet<>();
-		// Make sure these moves are within the bounds of the board.
-		for (Integer[] move : moves) {
-			if (inBounds(move[0], move[1])) {
-				moveSet.add(Arrays.asList(move));
-			}
-		}
-		return moveSet;
+		// The attack table already excludes steps off the board.
+		return toMoveSet(Attacks.king(Position.square(row, col)));
 	}
 
 	/**
@@ -1,8 +1,8 @@
 package model.Pieces;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
+import model.Attacks;
+import model.Position;
+
 import java.util.List;
 import java.util.Set;
 
@@ -52,25 +52,8 @@ public class Knight extends Piece{
 	 */
 	@Override
 	public Set<List<Integer>> moveSet() {
-
-		final Integer[][] moves = {
-				{row + 1, col + 2},
-				{row + 1, col - 2},
-				{row - 1, col + 2},
-				{row - 1, col - 2},
-				{row + 2, col + 1},
-				{row + 2, col - 1},
-				{row - 2, col + 1},
-				{row - 2, col - 1}
-		};
-		Set<List<Integer>> moveSet = new HashSet<>();
-		// Make sure these moves are within the bounds of the board.
-		for (Integer[] move : moves) {
-			if (inBounds(move[0], move[1])) {
-				moveSet.add(Arrays.asList(move));
-			}
-		}
-		return moveSet;
+		// The attack table already excludes jumps off the board.
+		return toMoveSet(Attacks.knight(Position.square(row, col)));
 	}
 
 	/**
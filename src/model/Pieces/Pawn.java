@@ -1,7 +1,8 @@
 package model.Pieces;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import model.Attacks;
+import model.Position;
+
 import java.util.List;
 import java.util.Set;
 /**
@@ -76,24 +77,9 @@ public class Pawn extends Piece {
 	 */
 	@Override
 	public Set<List<Integer>> moveSet() {
-		Set<List<Integer>> moveSet = new HashSet<>();
-		if (icon.equals("\u2659")) {
-			if (!madeFirstMove) {
-				moveSet.add(Arrays.asList(row - 2, col));
-			}
-			moveSet.add(Arrays.asList(row - 1, col));
-			moveSet.add(Arrays.asList(row - 1, col + 1));
-			moveSet.add(Arrays.asList(row - 1, col - 1));
-		} else {
-			if (!madeFirstMove) {
-				moveSet.add(Arrays.asList(row + 2, col));
-			}
-			moveSet.add(Arrays.asList(row + 1, col));
-			moveSet.add(Arrays.asList(row + 1, col + 1));
-			moveSet.add(Arrays.asList(row + 1, col - 1));
-		}
-		moveSet.removeIf(move -> !inBounds(move.get(0), move.get(1)));
-		return moveSet;
+		int color = isWhite ? Position.WHITE : Position.BLACK;
+		int square = Position.square(row, col);
+		return toMoveSet(Attacks.pawnPushes(color, square, madeFirstMove) | Attacks.pawn(color, square));
 	}
 
 	/**
@@ -1,5 +1,9 @@
 package model.Pieces;
 
+import model.Position;
+
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -33,6 +37,22 @@ public abstract class Piece {
 		return row >= 0 && row < 8 && col >= 0 && col < 8;
 	}
 
+	/**
+	 * Convert a bitboard of squares (see model.Position) into a Set of
+	 * Integer Lists, the format returned by moveSet().
+	 *
+	 * @param squares	a long, one bit per square
+	 * @return			a Set of Integer Lists holding the row and column of each square
+	 */
+	protected static Set<List<Integer>> toMoveSet(long squares) {
+		Set<List<Integer>> moveSet = new HashSet<>();
+		for (; squares != 0; squares &= squares - 1) {
+			int sq = Long.numberOfTrailingZeros(squares);
+			moveSet.add(Arrays.asList(Position.row(sq), Position.column(sq)));
+		}
+		return moveSet;
+	}
+
 	/**
 	 * a getter method for row
 	 * @return	an int
@@ -1,7 +1,8 @@
 package model.Pieces;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import model.Attacks;
+import model.Position;
+
 import java.util.List;
 import java.util.Set;
 
@@ -50,36 +51,8 @@ public class Queen extends Piece{
 	 */
 	@Override
 	public Set<List<Integer>> moveSet() {
-		Set<List<Integer>> moveSet = new HashSet<>();
-
-		// Diagonal moves
-		for (int i = row + 1, j = col + 1; inBounds(i, j); i++, j++) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		for (int i = row + 1, j = col - 1; inBounds(i, j); i++, j--) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		for (int i = row - 1, j = col + 1; inBounds(i, j); i--, j++) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-		for (int i = row - 1, j = col - 1; inBounds(i, j); i--, j--) {
-			moveSet.add(Arrays.asList(i, j));
-		}
-
-		// Horizontal and vertical moves
-		for (int i = row + 1; inBounds(i, col); i++) {
-			moveSet.add(Arrays.asList(i, col));
-		}
-		for (int i = row - 1; inBounds(i, col); i--) {
-			moveSet.add(Arrays.asList(i, col));
-		}
-		for (int i = col + 1; inBounds(row, i); i++) {
-			moveSet.add(Arrays.asList(row, i));
-		}
-		for (int i = col - 1; inBounds(row, i); i--) {
-			moveSet.add(Arrays.asList(row, i));
-		}
-		return moveSet;
+		// Diagonal, horizontal and vertical moves on an empty board.
+		return toMoveSet(Attacks.queen(Position.square(row, col), 0L));
 	}
 
 	/**
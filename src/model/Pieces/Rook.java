@@ -1,7 +1,8 @@
 package model.Pieces;
 
-import java.util.Arrays;
-import java.util.HashSet;
+import model.Attacks;
+import model.Position;
+
 import java.util.List;
 import java.util.Set;
 
@@ -76,20 +77,8 @@ public class Rook extends Piece{
 	 */
 	@Override
 	public Set<List<Integer>> moveSet() {
-		Set<List<Integer>> moveSet = new HashSet<>();
-		for (int i = row + 1; inBounds(i, col); i++) {
-			moveSet.add(Arrays.asList(i, col));
-		}
-		for (int i = row - 1; inBounds(i, col); i--) {
-			moveSet.add(Arrays.asList(i, col));
-		}
-		for (int i = col + 1; inBounds(row, i); i++) {
-			moveSet.add(Arrays.asList(row, i));
-		}
-		for (int i = col - 1; inBounds(row, i); i--) {
-			moveSet.add(Arrays.asList(row, i));
-		}
-		return moveSet;
+		// Attacks on an empty board are every square along the row and column.
+		return toMoveSet(Attacks.rook(Position.square(row, col), 0L));
 	}
 
 	/**
@@ -0,0 +1,769 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class stores the state of the game board as a set of 64-bit bitboards.
+ * Every square of the board is mapped to one bit of a long, using the same
+ * row/column layout as the GUI: square = row * 8 + column, so square 0 is the
+ * top left corner (black's queen side rook) and square 63 is the bottom right
+ * corner (white's king side rook).
+ *
+ * There is one bitboard per piece type and color, an occupancy mask for each
+ * color and one for the whole board. A small mailbox array is kept alongside so
+ * that the piece on a given square can be found without testing every bitboard,
+ * and each color has a list of the squares its pieces stand on, with a
+ * square-to-index array so a piece is added, removed or moved in the list in
+ * constant time.
+ */
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    public static final int EMPTY = -1;
+    public static final int NO_SQUARE = -1;
+    public static final int NUM_PIECES = 12;
+
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+    public static final int ALL_CASTLING = 15;
+
+    // home squares of the kings and rooks
+    public static final int WHITE_KING_HOME = 60;
+    public static final int BLACK_KING_HOME = 4;
+    private static final int[] CASTLING_ROOK_HOMES = {63, 56, 7, 0};
+    // castling rights that survive a move touching each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++)
+            CASTLING_MASK[sq] = ALL_CASTLING;
+        CASTLING_MASK[WHITE_KING_HOME] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[BLACK_KING_HOME] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        for (int i = 0; i < 4; i++)
+            CASTLING_MASK[CASTLING_ROOK_HOMES[i]] &= ~(1 << i);
+    }
+
+    // initial depth of the undo stack, it grows if a game runs longer
+    private static final int MAX_PLY = 1024;
+
+    private final long[] pieces = new long[NUM_PIECES];
+    private final long[] occupancy = new long[2];
+    private long occupied;
+    private final int[] board = new int[64];
+    private final int[][] pieceList = new int[2][64];
+    private final int[] pieceCount = new int[2];
+    // the index of each occupied square in its color's piece list
+    private final int[] listIndex = new int[64];
+    private long moved;
+    private int sideToMove = WHITE;
+    private int castlingRights;
+    private int epSquare = NO_SQUARE;
+    private long key;
+    // the Zobrist key of the pawns alone, for the pawn structure cache
+    private long pawnKey;
+    // the piece-square sums of both game stages, white minus black, and the game phase (see PieceSquare)
+    private int middlegameScore;
+    private int endgameScore;
+    private int phase;
+    // plies since the last capture or pawn move
+    private int halfmoveClock;
+    // one undo record per move played, see makeMove
+    private long[] undoStack = new long[MAX_PLY];
+    private long[] movedStack = new long[MAX_PLY];
+    private long[] keyStack = new long[MAX_PLY];
+    private int ply;
+
+    /**
+     * The constructor creates an empty board.
+     */
+    public Position() {
+        clear();
+    }
+
+    /**
+     * The copy constructor duplicates the board and game state of another
+     * position, so the copy can be searched on another thread. The undo stack
+     * is copied too, so the copy still sees the moves that led to it.
+     *
+     * @param other the Position to copy
+     */
+    public Position(Position other) {
+        for (int i = 0; i < NUM_PIECES; i++)
+            pieces[i] = other.pieces[i];
+        occupancy[WHITE] = other.occupancy[WHITE];
+        occupancy[BLACK] = other.occupancy[BLACK];
+        occupied = other.occupied;
+        System.arraycopy(other.board, 0, board, 0, 64);
+        System.arraycopy(other.pieceList[WHITE], 0, pieceList[WHITE], 0, 64);
+        System.arraycopy(other.pieceList[BLACK], 0, pieceList[BLACK], 0, 64);
+        pieceCount[WHITE] = other.pieceCount[WHITE];
+        pieceCount[BLACK] = other.pieceCount[BLACK];
+        System.arraycopy(other.listIndex, 0, listIndex, 0, 64);
+        moved = other.moved;
+        sideToMove = other.sideToMove;
+        castlingRights = other.castlingRights;
+        epSquare = other.epSquare;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        middlegameScore = other.middlegameScore;
+        endgameScore = other.endgameScore;
+        phase = other.phase;
+        halfmoveClock = other.halfmoveClock;
+        if (other.ply > MAX_PLY) {
+            undoStack = new long[other.undoStack.length];
+            movedStack = new long[other.undoStack.length];
+            keyStack = new long[other.undoStack.length];
+        }
+        ply = other.ply;
+        System.arraycopy(other.undoStack, 0, undoStack, 0, ply);
+        System.arraycopy(other.movedStack, 0, movedStack, 0, ply);
+        System.arraycopy(other.keyStack, 0, keyStack, 0, ply);
+    }
+
+    /**
+     * Set up a position from the board, side to move, castling and en passant
+     * fields of a FEN string, and the halfmove clock if it is present.
+     *
+     * @param fen   a String in Forsyth-Edwards Notation
+     * @return      the new Position
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static Position fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4)
+            throw new IllegalArgumentException("FEN needs at least 4 fields: " + fen);
+        Position position = new Position();
+        String[] rows = fields[0].split("/");
+        if (rows.length != 8)
+            throw new IllegalArgumentException("FEN board needs 8 rows: " + fen);
+        for (int i = 0; i < 8; i++) {
+            int j = 0;
+            for (char c : rows[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    j += c - '0';
+                    continue;
+                }
+                int type = "pnbrqk".indexOf(Character.toLowerCase(c));
+                if (type < 0 || j > 7)
+                    throw new IllegalArgumentException("bad FEN row " + rows[i]);
+                position.put(piece(Character.isUpperCase(c) ? WHITE : BLACK, type), square(i, j++));
+            }
+            if (j != 8)
+                throw new IllegalArgumentException("bad FEN row " + rows[i]);
+        }
+        position.setSideToMove(fields[1].equals("b") ? BLACK : WHITE);
+        int rights = 0;
+        // "KQkq" lists the rights in the order of their bits, "-" grants none
+        for (char c : fields[2].toCharArray()) {
+            int right = "KQkq".indexOf(c);
+            if (right >= 0)
+                rights |= 1 << right;
+        }
+        position.setCastlingRights(rights);
+        if (!fields[3].equals("-")) {
+            int ep = square('8' - fields[3].charAt(1), fields[3].charAt(0) - 'a');
+            position.key ^= Zobrist.enPassant(ep);
+            position.epSquare = ep;
+        }
+        if (fields.length > 4)
+            position.halfmoveClock = Integer.parseInt(fields[4]);
+        return position;
+    }
+
+    /**
+     * Remove every piece from the board.
+     */
+    public void clear() {
+        for (int i = 0; i < NUM_PIECES; i++)
+            pieces[i] = 0L;
+        occupancy[WHITE] = occupancy[BLACK] = 0L;
+        occupied = 0L;
+        moved = 0L;
+        pieceCount[WHITE] = pieceCount[BLACK] = 0;
+        for (int sq = 0; sq < 64; sq++)
+            board[sq] = EMPTY;
+        sideToMove = WHITE;
+        castlingRights = 0;
+        epSquare = NO_SQUARE;
+        key = 0L;
+        pawnKey = 0L;
+        middlegameScore = endgameScore = phase = 0;
+        halfmoveClock = 0;
+        ply = 0;
+    }
+
+    /**
+     * a getter for the color to move
+     * @return  an int, WHITE or BLACK
+     */
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * a setter for the color to move
+     * @param color an int, WHITE or BLACK
+     */
+    public void setSideToMove(int color) {
+        key ^= Zobrist.side(sideToMove) ^ Zobrist.side(color);
+        sideToMove = color;
+    }
+
+    /**
+     * a getter for the castling rights
+     * @return  an int, a combination of WHITE_KINGSIDE through BLACK_QUEENSIDE
+     */
+    public int castlingRights() {
+        return castlingRights;
+    }
+
+    /**
+     * a setter for the castling rights
+     * @param rights    an int, a combination of WHITE_KINGSIDE through BLACK_QUEENSIDE
+     */
+    public void setCastlingRights(int rights) {
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(rights);
+        castlingRights = rights;
+    }
+
+    /**
+     * Grant every castling right whose king and rook are still on their home
+     * squares. Used after setting up a board from a saved game.
+     */
+    public void deriveCastlingRights() {
+        int rights = 0;
+        for (int i = 0; i < 4; i++) {
+            int color = i < 2 ? WHITE : BLACK;
+            int kingHome = color == WHITE ? WHITE_KING_HOME : BLACK_KING_HOME;
+            if (board[kingHome] == piece(color, KING) && board[CASTLING_ROOK_HOMES[i]] == piece(color, ROOK))
+                rights |= 1 << i;
+        }
+        setCastlingRights(rights);
+    }
+
+    /**
+     * a getter for the en passant square, the square a pawn skipped over
+     * with a double push on the last move
+     * @return  an int, the square index or NO_SQUARE
+     */
+    public int epSquare() {
+        return epSquare;
+    }
+
+    /**
+     * Convert a row and column into a square index.
+     *
+     * @param row   an int, the row (0 is black's back rank)
+     * @param col   an int, the column
+     * @return      an int, the square index
+     */
+    public static int square(int row, int col) {
+        return (row << 3) | col;
+    }
+
+    /**
+     * a getter for the row of a square
+     * @param sq    an int, the square index
+     * @return      an int, the row
+     */
+    public static int row(int sq) {
+        return sq >>> 3;
+    }
+
+    /**
+     * a getter for the column of a square
+     * @param sq    an int, the square index
+     * @return      an int, the column
+     */
+    public static int column(int sq) {
+        return sq & 7;
+    }
+
+    /**
+     * Get the single bit bitboard of a square.
+     *
+     * @param sq    an int, the square index
+     * @return      a long with only the bit of the square set
+     */
+    public static long bit(int sq) {
+        return 1L << sq;
+    }
+
+    /**
+     * Combine a color and a piece type into a piece code.
+     *
+     * @param color an int, WHITE or BLACK
+     * @param type  an int, PAWN through KING
+     * @return      an int, the piece code
+     */
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    /**
+     * a getter for the type of a piece code
+     * @param piece an int, the piece code
+     * @return      an int, PAWN through KING
+     */
+    public static int typeOf(int piece) {
+        return piece % 6;
+    }
+
+    /**
+     * a getter for the color of a piece code
+     * @param piece an int, the piece code
+     * @return      an int, WHITE or BLACK
+     */
+    public static int colorOf(int piece) {
+        return piece / 6;
+    }
+
+    /**
+     * Place a piece on an empty square. A newly placed piece has not moved.
+     *
+     * @param piece an int, the piece code
+     * @param sq    an int, the square index
+     */
+    public void put(int piece, int sq) {
+        long b = bit(sq);
+        pieces[piece] |= b;
+        occupancy[colorOf(piece)] |= b;
+        occupied |= b;
+        board[sq] = piece;
+        moved &= ~b;
+        key ^= Zobrist.piece(piece, sq);
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.piece(piece, sq);
+        middlegameScore += PieceSquare.middlegame(piece, sq);
+        endgameScore += PieceSquare.endgame(piece, sq);
+        phase += PieceSquare.phase(piece);
+        int color = colorOf(piece);
+        listIndex[sq] = pieceCount[color];
+        pieceList[color][pieceCount[color]++] = sq;
+    }
+
+    /**
+     * Remove the piece on a square.
+     *
+     * @param sq    an int, the square index
+     * @return      an int, the removed piece code or EMPTY
+     */
+    public int remove(int sq) {
+        int piece = board[sq];
+        if (piece == EMPTY)
+            return EMPTY;
+        long b = bit(sq);
+        pieces[piece] &= ~b;
+        occupancy[colorOf(piece)] &= ~b;
+        occupied &= ~b;
+        board[sq] = EMPTY;
+        moved &= ~b;
+        key ^= Zobrist.piece(piece, sq);
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.piece(piece, sq);
+        middlegameScore -= PieceSquare.middlegame(piece, sq);
+        endgameScore -= PieceSquare.endgame(piece, sq);
+        phase -= PieceSquare.phase(piece);
+        // fill the hole with the last square in the list
+        int color = colorOf(piece);
+        int last = pieceList[color][--pieceCount[color]];
+        pieceList[color][listIndex[sq]] = last;
+        listIndex[last] = listIndex[sq];
+        return piece;
+    }
+
+    /**
+     * Move a piece to an empty square and mark it as moved.
+     *
+     * @param from  an int, the square the piece is on
+     * @param to    an int, the empty destination square
+     */
+    public void movePiece(int from, int to) {
+        int piece = board[from];
+        long fromTo = bit(from) | bit(to);
+        pieces[piece] ^= fromTo;
+        occupancy[colorOf(piece)] ^= fromTo;
+        occupied ^= fromTo;
+        board[from] = EMPTY;
+        board[to] = piece;
+        moved = (moved & ~bit(from)) | bit(to);
+        key ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+        if (typeOf(piece) == PAWN)
+            pawnKey ^= Zobrist.piece(piece, from) ^ Zobrist.piece(piece, to);
+        middlegameScore += PieceSquare.middlegame(piece, to) - PieceSquare.middlegame(piece, from);
+        endgameScore += PieceSquare.endgame(piece, to) - PieceSquare.endgame(piece, from);
+        pieceList[colorOf(piece)][listIndex[from]] = to;
+        listIndex[to] = listIndex[from];
+    }
+
+    /**
+     * a getter for the piece on a square
+     * @param sq    an int, the square index
+     * @return      an int, the piece code or EMPTY
+     */
+    public int pieceAt(int sq) {
+        return board[sq];
+    }
+
+    /**
+     * a getter for the bitboard of a piece
+     * @param color an int, WHITE or BLACK
+     * @param type  an int, PAWN through KING
+     * @return      a long, every square holding that piece
+     */
+    public long pieces(int color, int type) {
+        return pieces[piece(color, type)];
+    }
+
+    /**
+     * a getter for the occupancy of one color
+     * @param color an int, WHITE or BLACK
+     * @return      a long, every square holding a piece of that color
+     */
+    public long occupancy(int color) {
+        return occupancy[color];
+    }
+
+    /**
+     * a getter for the occupancy of the whole board
+     * @return      a long, every occupied square
+     */
+    public long occupied() {
+        return occupied;
+    }
+
+    /**
+     * a getter for the number of pieces of a color
+     * @param color an int, WHITE or BLACK
+     * @return      an int, the length of the color's piece list
+     */
+    public int pieceCount(int color) {
+        return pieceCount[color];
+    }
+
+    /**
+     * a getter for an entry of a color's piece list. The order of the list
+     * changes as pieces are removed.
+     * @param color an int, WHITE or BLACK
+     * @param index an int, from 0 to pieceCount(color) - 1
+     * @return      an int, the square of the piece
+     */
+    public int pieceSquare(int color, int index) {
+        return pieceList[color][index];
+    }
+
+    /**
+     * Check if the piece on a square has moved since it was placed.
+     *
+     * @param sq    an int, the square index
+     * @return      a boolean, true if the piece has moved
+     */
+    public boolean hasMoved(int sq) {
+        return (moved & bit(sq)) != 0;
+    }
+
+    /**
+     * Set whether the piece on a square counts as having moved.
+     *
+     * @param sq        an int, the square index
+     * @param hasMoved  a boolean, true if the piece has moved
+     */
+    public void setMoved(int sq, boolean hasMoved) {
+        if (hasMoved)
+            moved |= bit(sq);
+        else
+            moved &= ~bit(sq);
+    }
+
+    /**
+     * a getter for the square of a king
+     * @param color an int, WHITE or BLACK
+     * @return      an int, the king square or 64 if there is no king
+     */
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[piece(color, KING)]);
+    }
+
+    /**
+     * Get every square attacked by the piece on a square, using the current
+     * occupancy to stop sliding pieces. Pawns only attack diagonally.
+     * Every piece is a single table lookup in Attacks.
+     *
+     * @param sq    an int, the square index
+     * @return      a long, the attacked squares
+     */
+    public long attacks(int sq) {
+        int piece = board[sq];
+        return switch (typeOf(piece)) {
+            case PAWN -> Attacks.pawn(colorOf(piece), sq);
+            case KNIGHT -> Attacks.knight(sq);
+            case BISHOP -> Attacks.bishop(sq, occupied);
+            case ROOK -> Attacks.rook(sq, occupied);
+            case QUEEN -> Attacks.queen(sq, occupied);
+            default -> Attacks.king(sq);
+        };
+    }
+
+    /**
+     * Check if a square is attacked by any piece of the given color. Rather than
+     * asking every enemy piece what it attacks, this looks outward from the square:
+     * a knight on the square would attack exactly the squares a knight could attack
+     * it from, and the same holds for kings, sliders and (with the colors swapped)
+     * pawns. So each piece type is one table lookup against the attacker's bitboard.
+     *
+     * @param sq        an int, the square index
+     * @param byColor   an int, the attacking color
+     * @return          a boolean, true if attacked
+     */
+    public boolean isAttacked(int sq, int byColor) {
+        int base = byColor * 6;
+        if ((Attacks.knight(sq) & pieces[base + KNIGHT]) != 0
+                || (Attacks.pawn(byColor ^ 1, sq) & pieces[base + PAWN]) != 0
+                || (Attacks.king(sq) & pieces[base + KING]) != 0)
+            return true;
+        long queens = pieces[base + QUEEN];
+        return (Attacks.bishop(sq, occupied) & (pieces[base + BISHOP] | queens)) != 0
+                || (Attacks.rook(sq, occupied) & (pieces[base + ROOK] | queens)) != 0;
+    }
+
+    /**
+     * Get every piece, of either color, that attacks a square. The occupancy is
+     * passed in so that pieces can be lifted off the board without changing it.
+     *
+     * @param sq        an int, the square index
+     * @param occupied  a long, the squares that block sliding pieces
+     * @return          a long, the squares of the attacking pieces
+     */
+    public long attackersTo(int sq, long occupied) {
+        long queens = pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        long diagonal = pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)] | queens;
+        long straight = pieces[piece(WHITE, ROOK)] | pieces[piece(BLACK, ROOK)] | queens;
+        return (Attacks.pawn(BLACK, sq) & pieces[piece(WHITE, PAWN)])
+                | (Attacks.pawn(WHITE, sq) & pieces[piece(BLACK, PAWN)])
+                | (Attacks.knight(sq) & (pieces[piece(WHITE, KNIGHT)] | pieces[piece(BLACK, KNIGHT)]))
+                | (Attacks.king(sq) & (pieces[piece(WHITE, KING)] | pieces[piece(BLACK, KING)]))
+                | (Attacks.bishop(sq, occupied) & diagonal)
+                | (Attacks.rook(sq, occupied) & straight);
+    }
+
+    /**
+     * Check if the king of a color is attacked.
+     *
+     * @param color an int, WHITE or BLACK
+     * @return      a boolean, true if in check, false if not or if there is no king
+     */
+    public boolean inCheck(int color) {
+        long king = pieces[piece(color, KING)];
+        return king != 0 && isAttacked(Long.numberOfTrailingZeros(king), color ^ 1);
+    }
+
+    /**
+     * Play a move (see PackedMove) on the board. Captures, en passant,
+     * castling and promotion are handled, the castling rights and en passant
+     * square are updated and the turn passes to the other color. The move is
+     * not checked for legality.
+     *
+     * Everything needed to take the move back is packed into one record on the
+     * undo stack, so unmakeMove restores the position exactly without searching
+     * the board. The Zobrist key is updated along the way (see Zobrist).
+     *
+     * @param move  an int, the packed move
+     */
+    public void makeMove(int move) {
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        int color = colorOf(board[from]);
+        if (ply == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, ply * 2);
+            movedStack = Arrays.copyOf(movedStack, ply * 2);
+            keyStack = Arrays.copyOf(keyStack, ply * 2);
+        }
+        movedStack[ply] = moved;
+        keyStack[ply] = key;
+        int captured = PackedMove.isEnPassant(move) ? remove(PackedMove.enPassantVictim(move)) : remove(to);
+        undoStack[ply++] = (move & 0xFFFFFFFFL)
+                | (long) (captured + 1) << 32
+                | (long) castlingRights << 36
+                | (long) (epSquare + 1) << 40
+                | (long) halfmoveClock << 48;
+        halfmoveClock = captured != EMPTY || typeOf(board[from]) == PAWN ? 0 : Math.min(halfmoveClock + 1, 0xFFFF);
+        movePiece(from, to);
+        if (PackedMove.isCastle(move))
+            movePiece(PackedMove.castleRookFrom(move), PackedMove.castleRookTo(move));
+        if (PackedMove.isPromotion(move)) {
+            remove(to);
+            put(piece(color, PackedMove.promotion(move)), to);
+            moved |= bit(to);
+        }
+        int rights = castlingRights & CASTLING_MASK[from] & CASTLING_MASK[to];
+        int ep = PackedMove.isDoublePush(move) ? (from + to) >> 1 : NO_SQUARE;
+        key ^= Zobrist.castling(castlingRights) ^ Zobrist.castling(rights)
+                ^ Zobrist.enPassant(epSquare) ^ Zobrist.enPassant(ep) ^ Zobrist.side(BLACK);
+        castlingRights = rights;
+        epSquare = ep;
+        sideToMove ^= 1;
+    }
+
+    /**
+     * Take back the last move played with makeMove.
+     */
+    public void unmakeMove() {
+        long record = undoStack[--ply];
+        int move = (int) record;
+        int captured = (int) (record >>> 32 & 15) - 1;
+        castlingRights = (int) (record >>> 36 & 15);
+        epSquare = (int) (record >>> 40 & 127) - 1;
+        halfmoveClock = (int) (record >>> 48 & 0xFFFF);
+        sideToMove ^= 1;
+        int from = PackedMove.from(move);
+        int to = PackedMove.to(move);
+        if (PackedMove.isPromotion(move)) {
+            remove(to);
+            put(piece(sideToMove, PAWN), to);
+        }
+        movePiece(to, from);
+        if (PackedMove.isCastle(move))
+            movePiece(PackedMove.castleRookTo(move), PackedMove.castleRookFrom(move));
+        if (captured != EMPTY)
+            put(captured, PackedMove.isEnPassant(move) ? PackedMove.enPassantVictim(move) : to);
+        moved = movedStack[ply];
+        key = keyStack[ply];
+    }
+
+    /**
+     * a getter for the Zobrist key of the position, kept up to date by every change
+     * @return  a long, the key
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Compute the Zobrist key of the position from scratch. It always equals key(),
+     * this is only used to check the incremental updates.
+     *
+     * @return  a long, the key
+     */
+    public long computeKey() {
+        long k = Zobrist.castling(castlingRights) ^ Zobrist.enPassant(epSquare) ^ Zobrist.side(sideToMove);
+        for (int color = WHITE; color <= BLACK; color++) {
+            for (int i = 0; i < pieceCount[color]; i++) {
+                int sq = pieceList[color][i];
+                k ^= Zobrist.piece(board[sq], sq);
+            }
+        }
+        return k;
+    }
+
+    /**
+     * a getter for the Zobrist key of the pawns alone, kept up to date by every
+     * change. Positions with the same pawns on the same squares share it.
+     * @return  a long, the key
+     */
+    public long pawnKey() {
+        return pawnKey;
+    }
+
+    /**
+     * Compute the pawn key from scratch. It always equals pawnKey(), this is
+     * only used to check the incremental updates.
+     *
+     * @return  a long, the key
+     */
+    public long computePawnKey() {
+        long k = 0L;
+        for (int color = WHITE; color <= BLACK; color++) {
+            long pawns = pieces[piece(color, PAWN)];
+            while (pawns != 0) {
+                int sq = Long.numberOfTrailingZeros(pawns);
+                k ^= Zobrist.piece(piece(color, PAWN), sq);
+                pawns &= pawns - 1;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * a getter for the middlegame piece-square score, kept up to date by every change
+     * @return  an int, white's sum minus black's in centipawns
+     */
+    public int middlegameScore() {
+        return middlegameScore;
+    }
+
+    /**
+     * a getter for the endgame piece-square score, kept up to date by every change
+     * @return  an int, white's sum minus black's in centipawns
+     */
+    public int endgameScore() {
+        return endgameScore;
+    }
+
+    /**
+     * a getter for the game phase
+     * @return  an int, PieceSquare.MAX_PHASE with every piece on the board, falling to 0 as they are traded
+     */
+    public int phase() {
+        return phase;
+    }
+
+    /**
+     * Compute the piece-square scores and phase from scratch. They always
+     * equal the incremental ones, this is only used to check the updates.
+     *
+     * @return  an int array with the middlegame score, endgame score and phase
+     */
+    public int[] computePieceSquare() {
+        int[] scores = new int[3];
+        for (int color = WHITE; color <= BLACK; color++) {
+            for (int i = 0; i < pieceCount[color]; i++) {
+                int sq = pieceList[color][i];
+                scores[0] += PieceSquare.middlegame(board[sq], sq);
+                scores[1] += PieceSquare.endgame(board[sq], sq);
+                scores[2] += PieceSquare.phase(board[sq]);
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * a getter for the halfmove clock
+     * @return  an int, the plies since the last capture or pawn move
+     */
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * Check if the position has been seen before with the same side to move.
+     * Only positions since the last capture or pawn move can repeat, so only
+     * those keys on the undo stack are compared.
+     *
+     * @return  a boolean, true if the position is a repetition
+     */
+    public boolean isRepetition() {
+        for (int i = ply - 4; i >= 0 && i >= ply - halfmoveClock; i -= 2) {
+            if (keyStack[i] == key)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * a getter for the number of moves that can be taken back
+     * @return  an int, the number of records on the undo stack
+     */
+    public int ply() {
+        return ply;
+    }
+}
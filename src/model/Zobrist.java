@@ -0,0 +1,76 @@
+package model;
+
+import java.util.SplittableRandom;
+
+import static model.Position.*;
+
+/**
+ * This class holds the random numbers used to hash a Position into a single
+ * 64-bit Zobrist key. A key is the XOR of one number per piece on its square,
+ * one for the castling rights, one for the en passant column and one when
+ * black is to move. Since XOR undoes itself, a move updates the key by XORing
+ * only the numbers of what changed (see Position.makeMove).
+ *
+ * The numbers come from a fixed seed so a key means the same thing in every run.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x335C4E55L;
+
+    private static final long[][] PIECE_SQUARE = new long[NUM_PIECES][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int piece = 0; piece < NUM_PIECES; piece++)
+            for (int sq = 0; sq < 64; sq++)
+                PIECE_SQUARE[piece][sq] = random.nextLong();
+        // no castling rights hashes to 0 so an empty board has key 0
+        for (int rights = 1; rights < 16; rights++)
+            CASTLING[rights] = random.nextLong();
+        for (int col = 0; col < 8; col++)
+            EN_PASSANT[col] = random.nextLong();
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * a getter for the number of a piece on a square
+     * @param piece an int, the piece code
+     * @param sq    an int, the square index
+     * @return      a long, the random number
+     */
+    public static long piece(int piece, int sq) {
+        return PIECE_SQUARE[piece][sq];
+    }
+
+    /**
+     * a getter for the number of a set of castling rights
+     * @param rights    an int, a combination of WHITE_KINGSIDE through BLACK_QUEENSIDE
+     * @return          a long, the random number, 0 for no rights
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     * a getter for the number of an en passant square
+     * @param sq    an int, the en passant square or NO_SQUARE
+     * @return      a long, the random number of its column, 0 for NO_SQUARE
+     */
+    public static long enPassant(int sq) {
+        return sq == NO_SQUARE ? 0L : EN_PASSANT[column(sq)];
+    }
+
+    /**
+     * a getter for the number of the side to move
+     * @param color an int, WHITE or BLACK
+     * @return      a long, the random number, 0 for WHITE
+     */
+    public static long side(int color) {
+        return color == BLACK ? BLACK_TO_MOVE : 0L;
+    }
+}
@@ -3,7 +3,11 @@ package testing;
 import controller.ChessController;
 import model.ChessModel;
 import model.ChessMoveMessage;
+import model.Pieces.King;
+import model.Pieces.Knight;
+import model.Pieces.Pawn;
 import model.Pieces.Piece;
+import model.Position;
 import model.empty;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -198,6 +202,188 @@ public class ChessModelTests {
         assertEquals(queenMoveSet, controller.getValidMoveSet(new compoundKey(6, 2)));
     }
 
+    /**
+     * This method tests the move sets of the pieces that read from the precomputed attack tables
+     */
+    @Test
+    public void testAttackTableMoveSets() {
+        assertEquals(Set.of(Arrays.asList(1, 2), Arrays.asList(2, 1)), new Knight(0, 0, false).moveSet());
+        assertEquals(Set.of(Arrays.asList(7, 3), Arrays.asList(7, 5), Arrays.asList(6, 3), Arrays.asList(6, 4),
+                Arrays.asList(6, 5)), new King(7, 4, true).moveSet());
+        assertEquals(Set.of(Arrays.asList(5, 3), Arrays.asList(4, 3), Arrays.asList(5, 2), Arrays.asList(5, 4)),
+                new Pawn(6, 3, true).moveSet());
+
+        Pawn movedPawn = new Pawn(1, 0, false);
+        movedPawn.move(2, 0);
+        assertEquals(Set.of(Arrays.asList(3, 0), Arrays.asList(3, 1)), movedPawn.moveSet());
+    }
+
+    /**
+     * This method tests the sliding piece path checks, which are a single lookup of the squares in between
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testCheckPath() throws IOException {
+        ChessModel model = new ChessModel();
+        // rook and queen are boxed in by their own pawns
+        assertFalse(model.checkPath(new compoundKey(7, 0), new compoundKey(4, 0)));
+        assertFalse(model.checkPath(new compoundKey(7, 3), new compoundKey(4, 6)));
+        // neighbouring squares have nothing in between
+        assertTrue(model.checkPath(new compoundKey(7, 3), new compoundKey(6, 4)));
+
+        model.makeMove(new compoundKey(6, 4), new compoundKey(4, 4));
+        model.makeMove(new compoundKey(1, 4), new compoundKey(3, 4));
+        // the king's pawn opened the queen's and bishop's diagonals
+        assertTrue(model.checkPath(new compoundKey(7, 3), new compoundKey(3, 7)));
+        assertTrue(model.checkPath(new compoundKey(7, 5), new compoundKey(2, 0)));
+        // the king's knight still sits between the king's rook and bishop
+        assertFalse(model.checkPath(new compoundKey(7, 7), new compoundKey(7, 5)));
+    }
+
+    /**
+     * This method tests an en passant capture and that the pawn's double push is only available from its start row
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testEnPassant() throws IOException {
+        ChessModel model = new ChessModel();
+        assertTrue(model.makeMove(new compoundKey(6, 4), new compoundKey(4, 4))); // white pawn
+        assertTrue(model.makeMove(new compoundKey(1, 0), new compoundKey(2, 0))); // black pawn
+        assertTrue(model.makeMove(new compoundKey(4, 4), new compoundKey(3, 4))); // white pawn
+        assertFalse(model.legalSecondMove(new compoundKey(2, 0), new compoundKey(4, 0)));
+        assertTrue(model.makeMove(new compoundKey(1, 3), new compoundKey(3, 3))); // black pawn double push
+        // the white pawn captures the black pawn as it passes
+        assertTrue(model.makeMove(new compoundKey(3, 4), new compoundKey(2, 3)));
+        assertEquals("", model.getPieceString(3, 3));
+        assertEquals(model.getPieceString(6, 0), model.getPieceString(2, 3));
+    }
+
+    /**
+     * This method tests that the trial moves made while looking for checkmate are taken back exactly, leaving the
+     * pieces that never moved unflagged
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testTrialMovesAreUndone() throws IOException {
+        ChessModel model = new ChessModel();
+        model.makeMove(new compoundKey(6, 5), new compoundKey(5, 5)); // white pawn
+        model.makeMove(new compoundKey(1, 4), new compoundKey(3, 4)); // black pawn
+        model.makeMove(new compoundKey(6, 6), new compoundKey(4, 6)); // white pawn
+        model.makeMove(new compoundKey(0, 3), new compoundKey(4, 7)); // black queen checkmate
+
+        Set<compoundKey> movedPiece = Set.of(new compoundKey(5, 5), new compoundKey(3, 4), new compoundKey(4, 6),
+                new compoundKey(4, 7));
+        List<List<Piece>> boardGrid = model.getBoardGrid();
+        for (int i = 0; i < boardGrid.size(); i++) {
+            for (int j = 0; j < boardGrid.get(i).size(); j++) {
+                Piece piece = boardGrid.get(i).get(j);
+                if (piece != null)
+                    assertEquals(movedPiece.contains(new compoundKey(i, j)), piece.getMadeFirstMove());
+            }
+        }
+    }
+
+    /**
+     * This method tests that the Zobrist key only depends on the position, not on the moves that led to it
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testZobristKey() throws IOException {
+        ChessModel model = new ChessModel();
+        long start = model.getZobristKey();
+        model.makeMove(new compoundKey(7, 6), new compoundKey(5, 5)); // white knight
+        assertNotEquals(start, model.getZobristKey());
+        model.makeMove(new compoundKey(0, 6), new compoundKey(2, 5)); // black knight
+        model.makeMove(new compoundKey(5, 5), new compoundKey(7, 6)); // white knight back
+        model.makeMove(new compoundKey(2, 5), new compoundKey(0, 6)); // black knight back
+        assertEquals(start, model.getZobristKey());
+
+        ChessModel other = new ChessModel();
+        model.makeMove(new compoundKey(7, 1), new compoundKey(5, 2)); // white knight
+        model.makeMove(new compoundKey(1, 4), new compoundKey(2, 4)); // black pawn
+        model.makeMove(new compoundKey(6, 3), new compoundKey(5, 3)); // white pawn
+        other.makeMove(new compoundKey(6, 3), new compoundKey(5, 3)); // white pawn
+        other.makeMove(new compoundKey(1, 4), new compoundKey(2, 4)); // black pawn
+        other.makeMove(new compoundKey(7, 1), new compoundKey(5, 2)); // white knight
+        assertEquals(model.saveGame(), other.saveGame());
+        assertEquals(model.getZobristKey(), other.getZobristKey());
+    }
+
+    /**
+     * This method tests that the piece lists follow pieces as they are placed, moved and captured
+     */
+    @Test
+    public void testPieceLists() {
+        Position position = new Position();
+        position.put(Position.piece(Position.WHITE, Position.KING), 60);
+        position.put(Position.piece(Position.WHITE, Position.ROOK), 63);
+        position.put(Position.piece(Position.BLACK, Position.KING), 4);
+        position.put(Position.piece(Position.BLACK, Position.KNIGHT), 55);
+        position.movePiece(63, 47);
+        position.remove(55);
+        position.movePiece(47, 55);
+
+        Set<Integer> white = new HashSet<>();
+        for (int i = 0; i < position.pieceCount(Position.WHITE); i++)
+            white.add(position.pieceSquare(Position.WHITE, i));
+        assertEquals(Set.of(60, 55), white);
+        assertEquals(1, position.pieceCount(Position.BLACK));
+        assertEquals(4, position.pieceSquare(Position.BLACK, 0));
+    }
+
+    /**
+     * This method tests the reverse attack probe against asking every piece what it attacks
+     */
+    @Test
+    public void testIsAttacked() {
+        Position position = new Position();
+        int[][] setup = {
+                {Position.WHITE, Position.KING, 62}, {Position.WHITE, Position.QUEEN, 35},
+                {Position.WHITE, Position.PAWN, 52}, {Position.WHITE, Position.KNIGHT, 42},
+                {Position.BLACK, Position.KING, 6}, {Position.BLACK, Position.ROOK, 3},
+                {Position.BLACK, Position.BISHOP, 21}, {Position.BLACK, Position.PAWN, 13}
+        };
+        for (int[] piece : setup)
+            position.put(Position.piece(piece[0], piece[1]), piece[2]);
+
+        for (int color = Position.WHITE; color <= Position.BLACK; color++) {
+            for (int sq = 0; sq < 64; sq++) {
+                boolean attacked = false;
+                for (int i = 0; i < position.pieceCount(color); i++)
+                    attacked |= (position.attacks(position.pieceSquare(color, i)) & Position.bit(sq)) != 0;
+                assertEquals(attacked, position.isAttacked(sq, color));
+            }
+        }
+        assertFalse(position.inCheck(Position.BLACK));
+        position.movePiece(35, 30);
+        assertTrue(position.inCheck(Position.BLACK));
+    }
+
+    /**
+     * This method tests that the valid moves of a player in check only include moves that block or escape the check
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testValidMovesInCheck() throws IOException {
+        ChessModel model = new ChessModel();
+        model.makeMove(new compoundKey(6, 3), new compoundKey(4, 3)); // white pawn
+        model.makeMove(new compoundKey(1, 4), new compoundKey(3, 4)); // black pawn
+        model.makeMove(new compoundKey(6, 7), new compoundKey(5, 7)); // white pawn
+        model.makeMove(new compoundKey(0, 5), new compoundKey(4, 1)); // black bishop check
+
+        assertEquals(Set.of(new compoundKey(5, 2), new compoundKey(6, 3)), model.getValidMoves(new compoundKey(7, 1)));
+        assertEquals(Set.of(new compoundKey(5, 2)), model.getValidMoves(new compoundKey(6, 2)));
+        assertEquals(Set.of(), model.getValidMoves(new compoundKey(6, 0)));
+        assertFalse(model.legalSecondMove(new compoundKey(6, 0), new compoundKey(5, 0)));
+        assertFalse(model.legalSecondMove(new compoundKey(6, 0), new compoundKey(4, 0)));
+        assertTrue(model.makeMove(new compoundKey(6, 2), new compoundKey(5, 2))); // white pawn blocks
+    }
+
     /**
      * This method tests the networked move functionality
      */
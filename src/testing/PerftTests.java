@@ -0,0 +1,91 @@
+package testing;
+
+import model.Engine.Perft;
+import model.Engine.PerftCache;
+import model.Position;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class checks the move generator against the published perft node counts of the standard test positions.
+ * Every rule (castling, en passant, promotion, pins and checks) shows up in at least one of them.
+ */
+public class PerftTests {
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String POSITION_3 = "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1";
+    private static final String POSITION_4 = "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1";
+    private static final String POSITION_5 = "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8";
+
+    /**
+     * This method tests the start position
+     */
+    @Test
+    public void testStartPosition() {
+        Position position = Position.fromFen(Perft.START_FEN);
+        assertEquals(20, Perft.count(position, 1, null));
+        assertEquals(400, Perft.count(position, 2, null));
+        assertEquals(8902, Perft.count(position, 3, null));
+        assertEquals(197281, Perft.count(position, 4, null));
+    }
+
+    /**
+     * This method tests kiwipete, which is full of castling, pins and promotions
+     */
+    @Test
+    public void testKiwipete() {
+        Position position = Position.fromFen(KIWIPETE);
+        assertEquals(48, Perft.count(position, 1, null));
+        assertEquals(2039, Perft.count(position, 2, null));
+        assertEquals(97862, Perft.count(position, 3, null));
+    }
+
+    /**
+     * This method tests an endgame with en passant captures that expose the king along a row
+     */
+    @Test
+    public void testEnPassantPins() {
+        Position position = Position.fromFen(POSITION_3);
+        assertEquals(14, Perft.count(position, 1, null));
+        assertEquals(191, Perft.count(position, 2, null));
+        assertEquals(2812, Perft.count(position, 3, null));
+        assertEquals(43238, Perft.count(position, 4, null));
+    }
+
+    /**
+     * This method tests two positions with promotions and a king in check
+     */
+    @Test
+    public void testPromotions() {
+        assertEquals(9467, Perft.count(Position.fromFen(POSITION_4), 3, null));
+        assertEquals(62379, Perft.count(Position.fromFen(POSITION_5), 3, null));
+    }
+
+    /**
+     * This method tests that the parallel count with a shared cache matches the single threaded one, and leaves the
+     * position it was given untouched
+     */
+    @Test
+    public void testParallelWithCache() {
+        Position position = Position.fromFen(KIWIPETE);
+        long key = position.key();
+        Perft.Result result = new Perft(4, new PerftCache(8)).run(position, 4);
+        assertEquals(4085603, result.nodes());
+        assertFalse(result.threadNodes().isEmpty());
+        assertEquals(key, position.key());
+    }
+
+    /**
+     * This method tests that FEN strings are read into the same position the game starts with
+     */
+    @Test
+    public void testFromFen() {
+        Position position = Position.fromFen(Perft.START_FEN);
+        assertEquals(Position.piece(Position.BLACK, Position.ROOK), position.pieceAt(0));
+        assertEquals(Position.piece(Position.WHITE, Position.KING), position.pieceAt(60));
+        assertEquals(Position.ALL_CASTLING, position.castlingRights());
+        assertEquals(position.computeKey(), position.key());
+        assertEquals(44, Position.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1").epSquare());
+        assertThrows(IllegalArgumentException.class, () -> Position.fromFen("8/8/8 w - -"));
+    }
+}
@@ -0,0 +1,736 @@
+package testing;
+
+import controller.ChessController;
+import model.Attacks;
+import model.ChessModel;
+import model.Engine.Bitbase;
+import model.Engine.Engine;
+import model.Engine.Evaluator;
+import model.Engine.MateSolver;
+import model.Engine.MonteCarloSearch;
+import model.Engine.MovePicker;
+import model.Engine.Nnue;
+import model.Engine.OpeningBook;
+import model.Engine.NnueAccumulator;
+import model.Engine.PawnTable;
+import model.Engine.ParallelSearch;
+import model.Engine.Search;
+import model.Engine.See;
+import model.Engine.TimeManager;
+import model.Engine.TranspositionTable;
+import model.MoveGenerator;
+import model.MoveList;
+import model.PackedMove;
+import model.PieceSquare;
+import model.Position;
+import org.junit.jupiter.api.Test;
+import view.ChessGUIView.compoundKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * This class tests the search engine on positions with one clearly best move.
+ */
+public class SearchTests {
+
+    /**
+     * Search a FEN position to a fixed depth.
+     *
+     * @param fen   the position in Forsyth-Edwards Notation
+     * @param depth the depth to search
+     * @return      the result of the search
+     */
+    private Search.Result search(String fen, int depth) {
+        return new Search(Position.fromFen(fen)).search(depth, 0);
+    }
+
+    /**
+     * This method tests that the engine finds a mate in one
+     */
+    @Test
+    public void testMateInOne() {
+        Search.Result result = search("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1", 3);
+        assertEquals("a1a8", PackedMove.toString(result.move()));
+        assertEquals(Search.MATE - 1, result.score());
+    }
+
+    /**
+     * This method tests that the engine finds a mate in two (three plies)
+     */
+    @Test
+    public void testMateInTwo() {
+        Search.Result result = search("k7/8/2K5/8/8/8/8/7R w - - 0 1", 4);
+        assertEquals(Search.MATE - 3, result.score());
+    }
+
+    /**
+     * This method tests that the engine takes a free piece and avoids losing its own
+     */
+    @Test
+    public void testWinsMaterial() {
+        assertEquals("e4d5", PackedMove.toString(search("4k3/8/8/3q4/4P3/8/8/4K3 w - - 0 1", 3).move()));
+        // the queen is attacked by both the pawn and the rook, and takes the rook
+        assertEquals("d2d5", PackedMove.toString(search("4k3/8/8/3r4/8/4p3/3Q4/4K3 w - - 0 1", 4).move()));
+    }
+
+    /**
+     * This method tests that a stalemate is scored as a draw and that there is no move to return
+     */
+    @Test
+    public void testStalemate() {
+        Search.Result result = search("k7/2Q5/1K6/8/8/8/8/8 b - - 0 1", 3);
+        assertEquals(PackedMove.NONE, result.move());
+        assertEquals(Search.DRAW, result.score());
+    }
+
+    /**
+     * This method tests that the engine's move can be played through the controller
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testEngineMoveThroughController() throws IOException {
+        ChessModel model = new ChessModel();
+        ChessController controller = new ChessController(model);
+        for (int i = 0; i < 4; i++) {
+            compoundKey[] move = controller.getEngineMove(100);
+            assertNotNull(move);
+            assertTrue(controller.legalFirstClick(move[0]));
+            assertTrue(controller.legalSecondMove(move[0], move[1]));
+            boolean whiteTurn = controller.isWhiteTurn();
+            controller.makeMove(move[0], move[1]);
+            assertNotEquals(whiteTurn, controller.isWhiteTurn());
+        }
+    }
+
+    /**
+     * This method tests that an entry reads back as stored, and that another position in the same slot is a
+     * collision and not a hit
+     */
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x123456789ABCDEFL;
+        int move = PackedMove.promotion(12, 4, Position.QUEEN, PackedMove.CAPTURE);
+        table.store(key, move, -Search.MATE + 3, 7, TranspositionTable.LOWER);
+        long entry = table.probe(key);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-Search.MATE + 3, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        // the same slot, a different position
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(key ^ 1L << 40));
+        assertEquals(1, table.hits());
+        assertEquals(1, table.misses());
+        assertEquals(1, table.collisions());
+        // a shallower result doesn't replace a deeper one
+        table.store(key, PackedMove.NONE, 50, 2, TranspositionTable.UPPER);
+        assertEquals(7, TranspositionTable.depth(table.probe(key)));
+    }
+
+    /**
+     * This method tests that a search sharing a filled table gets the same answer with fewer nodes
+     */
+    @Test
+    public void testSearchReusesTable() {
+        String fen = "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3";
+        TranspositionTable table = new TranspositionTable(4);
+        Search.Result first = new Search(Position.fromFen(fen), table).search(5, 0);
+        Search.Result second = new Search(Position.fromFen(fen), table).search(5, 0);
+        assertEquals(first.score(), second.score());
+        assertTrue(second.nodes() < first.nodes());
+        assertTrue(table.hits() > 0);
+        // mate scores come back out of the table at the right distance
+        assertEquals(Search.MATE - 3, new Search(Position.fromFen("k7/8/2K5/8/8/8/8/7R w - - 0 1"), table)
+                .search(6, 0).score());
+    }
+
+    /**
+     * This method tests that several threads sharing a table find the same mate as one, and leave the position
+     * they were given untouched
+     */
+    @Test
+    public void testParallelSearch() {
+        Position position = Position.fromFen("k7/8/2K5/8/8/8/8/7R w - - 0 1");
+        long key = position.key();
+        ParallelSearch search = new ParallelSearch(4, new TranspositionTable(4));
+        Search.Result result = search.search(position, 6, 0);
+        search.shutdown();
+        assertEquals(Search.MATE - 3, result.score());
+        assertEquals(key, position.key());
+    }
+
+    /**
+     * This method tests the order of the move picker: the table's move, captures by MVV-LVA, killers, then the
+     * quiet moves by history
+     */
+    @Test
+    public void testMovePickerOrder() {
+        // the white Queen on d4 and pawn on c4 can both take the black Rook on d5, the Knight on e1 can take a pawn
+        Position position = Position.fromFen("4k3/8/8/3r4/2PQ4/5p2/8/4N1K1 w - - 0 1");
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        int tableMove = find(list, "g1h1");
+        int killer = find(list, "d4a7");
+        int[][] history = new int[64][64];
+        history[60][43] = 100;
+        MovePicker picker = new MovePicker();
+        picker.init(position, list, tableMove, killer, PackedMove.NONE, history);
+        assertEquals("g1h1", PackedMove.toString(picker.next()));
+        assertEquals("c4d5", PackedMove.toString(picker.next()));
+        assertEquals("d4d5", PackedMove.toString(picker.next()));
+        assertEquals("e1f3", PackedMove.toString(picker.next()));
+        assertEquals("d4a7", PackedMove.toString(picker.next()));
+        assertEquals("e1d3", PackedMove.toString(picker.next()));
+        int count = 6;
+        while (picker.next() != PackedMove.NONE)
+            count++;
+        assertEquals(list.size(), count);
+    }
+
+    /**
+     * Find a move in a list by its name.
+     *
+     * @param list  the MoveList to search
+     * @param name  the move, like "e2e4"
+     * @return      the packed move
+     */
+    private int find(MoveList list, String name) {
+        for (int i = 0; i < list.size(); i++) {
+            if (PackedMove.toString(list.get(i)).equals(name))
+                return list.get(i);
+        }
+        throw new AssertionError(name + " is not legal");
+    }
+
+    /**
+     * This method tests that with the move picker most beta cutoffs come from the first move searched
+     */
+    @Test
+    public void testCutoffRate() {
+        Search.Result result = search("r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 1", 5);
+        assertTrue(result.cutoffRate() > 0.85, result.toString());
+    }
+
+    /**
+     * This method tests static exchange evaluation, including pieces that join in from behind another attacker
+     */
+    @Test
+    public void testStaticExchange() {
+        // the pawn on e6 defends d5
+        Position position = Position.fromFen("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1");
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        assertEquals(100 - 900, See.see(position, find(list, "d1d5")));
+        // an undefended Knight
+        position = Position.fromFen("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1");
+        MoveGenerator.generateLegal(position, list);
+        assertEquals(320, See.see(position, find(list, "d1d5")));
+        // the Rook on d8 defends d5, but the second white Rook behind the first wins the exchange
+        position = Position.fromFen("3rk3/8/8/3n4/8/8/3R4/3RK3 w - - 0 1");
+        MoveGenerator.generateLegal(position, list);
+        assertEquals(320, See.see(position, find(list, "d2d5")));
+        // a pawn takes a defended Rook
+        position = Position.fromFen("4k3/1b6/8/3r4/2P5/8/8/4K3 w - - 0 1");
+        MoveGenerator.generateLegal(position, list);
+        assertEquals(500 - 100, See.see(position, find(list, "c4d5")));
+        // a reused buffer gives the same answers as a fresh one
+        int[] gain = new int[See.MAX_CAPTURES];
+        assertEquals(500 - 100, See.see(position, find(list, "c4d5"), gain));
+        position = Position.fromFen("4k3/8/8/3n4/8/8/8/3RK3 w - - 0 1");
+        MoveGenerator.generateLegal(position, list);
+        assertEquals(320, See.see(position, find(list, "d1d5"), gain));
+        assertEquals(0, See.see(position, find(list, "e1e2"), gain));
+    }
+
+    /**
+     * This method tests that the quiescence search sees the recapture a shallow search would miss
+     */
+    @Test
+    public void testQuiescence() {
+        Search.Result result = search("4k3/8/4p3/3p4/8/8/8/3QK3 w - - 0 1", 1);
+        assertNotEquals("d1d5", PackedMove.toString(result.move()));
+        assertTrue(result.score() > 0);
+    }
+
+    /**
+     * This method tests that the piece-square scores kept up to date by every move match the ones computed from
+     * scratch, through captures, castles, en passant and promotions
+     */
+    @Test
+    public void testIncrementalEvaluation() {
+        Position position = Position.fromFen("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+        checkScores(position, 3);
+        Position start = Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        assertEquals(0, Evaluator.evaluate(start));
+        assertEquals(PieceSquare.MAX_PHASE, start.phase());
+        // the same position with the colors swapped scores the same for the side to move
+        assertEquals(Evaluator.evaluate(Position.fromFen("4k3/8/8/3q4/4P3/8/8/4K3 w - - 0 1")),
+                Evaluator.evaluate(Position.fromFen("4k3/8/8/4p3/3Q4/8/8/4K3 b - - 0 1")));
+    }
+
+    /**
+     * Compare the incremental scores with the computed ones at every node of a tree.
+     *
+     * @param position  the Position to walk, restored before returning
+     * @param depth     the number of plies to walk
+     */
+    private void checkScores(Position position, int depth) {
+        int[] scores = position.computePieceSquare();
+        assertArrayEquals(scores, new int[]{position.middlegameScore(), position.endgameScore(), position.phase()});
+        assertEquals(position.computePawnKey(), position.pawnKey());
+        if (depth == 0)
+            return;
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        for (int i = 0; i < list.size(); i++) {
+            position.makeMove(list.get(i));
+            checkScores(position, depth - 1);
+            position.unmakeMove();
+        }
+    }
+
+    /**
+     * This method tests the pawn structure terms and that a structure is scored once and then found in the table
+     */
+    @Test
+    public void testPawnTable() {
+        // white has doubled, isolated pawns on the c column with a passed pawn in front, black passed pawns on a3
+        // and h7
+        Position position = Position.fromFen("4k3/7p/8/8/2P5/p1P5/8/4K3 w - - 0 1");
+        PawnTable pawns = new PawnTable(16);
+        int slot = pawns.probe(position);
+        assertEquals(1L << 40 | 1L << 15, pawns.passed(slot, Position.BLACK));
+        assertEquals(1L << 34, pawns.passed(slot, Position.WHITE));
+        assertTrue(pawns.middlegame(slot) < 0);
+        assertEquals(0, pawns.hits());
+        assertEquals(1, pawns.misses());
+
+        // a King move keeps the pawn key, a pawn move changes it
+        long pawnKey = position.pawnKey();
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        position.makeMove(find(list, "e1d1"));
+        assertEquals(pawnKey, position.pawnKey());
+        assertEquals(slot, pawns.probe(position));
+        assertEquals(1, pawns.hits());
+        MoveGenerator.generateLegal(position, list);
+        position.makeMove(find(list, "a3a2"));
+        assertNotEquals(pawnKey, position.pawnKey());
+        pawns.probe(position);
+        assertEquals(1.0 / 3, pawns.hitRate(), 0.001);
+    }
+
+    /**
+     * This method tests that a network reads back from its weights file, that the incrementally updated
+     * accumulators give the same scores as ones computed from scratch, and that the Vector API and the plain loops
+     * agree
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testNnue() throws IOException {
+        Path file = Files.createTempFile("nnue", ".bin");
+        Nnue.random(64, 7).save(file);
+        Nnue network = Nnue.load(file);
+        Files.delete(file);
+        assertThrows(IOException.class, () -> Nnue.load(Path.of("src/testing/SearchTests.java")));
+
+        Position position = Position.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        NnueAccumulator vector = new NnueAccumulator(network);
+        NnueAccumulator scalar = new NnueAccumulator(network.scalar());
+        vector.refresh(position);
+        scalar.refresh(position);
+        checkAccumulators(position, vector, scalar, new NnueAccumulator(network.scalar()), 3);
+    }
+
+    /**
+     * Compare the incremental, vectorized and scalar scores at every node of a tree.
+     *
+     * @param position  the Position to walk, restored before returning
+     * @param vector    the NnueAccumulator updated on the network's own kernel
+     * @param scalar    the NnueAccumulator updated on plain loops
+     * @param fresh     an NnueAccumulator to compute from scratch
+     * @param depth     the number of plies to walk
+     */
+    private void checkAccumulators(Position position, NnueAccumulator vector, NnueAccumulator scalar,
+                                   NnueAccumulator fresh, int depth) {
+        fresh.refresh(position);
+        int side = position.sideToMove();
+        assertEquals(fresh.evaluate(side), vector.evaluate(side));
+        assertEquals(fresh.evaluate(side), scalar.evaluate(side));
+        if (depth == 0)
+            return;
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        for (int i = 0; i < list.size(); i++) {
+            vector.push(position, list.get(i));
+            scalar.push(position, list.get(i));
+            position.makeMove(list.get(i));
+            checkAccumulators(position, vector, scalar, fresh, depth - 1);
+            position.unmakeMove();
+            vector.pop();
+            scalar.pop();
+        }
+    }
+
+    /**
+     * This method tests pondering: when the opponent plays the expected reply the engine keeps searching from the
+     * table the background search filled for what is left of the move's time, or answers at once if the background
+     * search already used it, when they play another the background search is cancelled
+     *
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Test
+    public void testPonder() throws IOException, InterruptedException {
+        ChessModel model = new ChessModel();
+        Engine engine = new Engine(4, 1);
+        compoundKey[] move = engine.bestMove(model, 200);
+        model.makeMove(move[0], move[1]);
+        assertTrue(engine.ponder(model));
+        compoundKey[] reply = engine.ponderMove();
+        assertNotNull(reply);
+        model.makeMove(reply[0], reply[1]);
+        engine.opponentMoved(model);
+        assertEquals(1, engine.ponderHits());
+        assertTrue(engine.isPondering());
+        long start = System.nanoTime();
+        move = engine.bestMove(model, 300);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertTrue(model.legalSecondMove(move[0], move[1]));
+        assertFalse(engine.isPondering());
+        // the move was searched on from the warm table, not just taken from the ponder search
+        assertTrue(engine.lastResult().depth() > 0);
+        assertTrue(engine.lastResult().nodes() > 0);
+
+        model.makeMove(move[0], move[1]);
+        assertTrue(engine.ponder(model));
+        reply = engine.ponderMove();
+        // any legal reply other than the expected one
+        for (int i = 0; i < 8 && engine.ponderMisses() == 0; i++) {
+            compoundKey from = new compoundKey(1, i);
+            compoundKey to = new compoundKey(2, i);
+            if (!from.equals(reply[0]) && model.legalSecondMove(from, to)) {
+                model.makeMove(from, to);
+                engine.opponentMoved(model);
+            }
+        }
+        assertEquals(1, engine.ponderMisses());
+        assertFalse(engine.isPondering());
+
+        // pondered for longer than the budget, the ponder search's move is played at once
+        move = engine.bestMove(model, 200);
+        model.makeMove(move[0], move[1]);
+        assertTrue(engine.ponder(model));
+        reply = engine.ponderMove();
+        model.makeMove(reply[0], reply[1]);
+        engine.opponentMoved(model);
+        Thread.sleep(400);
+        start = System.nanoTime();
+        move = engine.bestMove(model, 200);
+        assertTrue(System.nanoTime() - start < 200_000_000L);
+        assertTrue(model.legalSecondMove(move[0], move[1]));
+        assertTrue(engine.lastResult().depth() > 0);
+        assertTrue(engine.lastResult().nanos() >= 200_000_000L);
+    }
+
+    /**
+     * This method tests that the time manager keeps every budget inside the clock, and that the engine playing on a
+     * short clock answers before its hard deadline
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testTimeManager() throws IOException {
+        TimeManager.Budget budget = TimeManager.allocate(180_000, 0);
+        assertTrue(budget.softMillis() > 0);
+        assertTrue(budget.softMillis() <= budget.hardMillis());
+        assertTrue(budget.hardMillis() <= 180_000 / 4);
+        for (long remaining = 180_000; remaining > 0; remaining /= 3) {
+            budget = TimeManager.allocate(remaining, 0);
+            assertTrue(budget.hardMillis() <= Math.max(1, remaining - TimeManager.SAFETY_MILLIS));
+        }
+        assertTrue(TimeManager.allocate(10_000, 2_000).softMillis() > TimeManager.allocate(10_000, 0).softMillis());
+        assertTrue(TimeManager.allocate(10_000, 0, 2).softMillis() > TimeManager.allocate(10_000, 0).softMillis());
+
+        ChessModel model = new ChessModel();
+        Engine engine = new Engine(4, 1);
+        long clock = 3_000;
+        for (int i = 0; i < 6; i++) {
+            long start = System.nanoTime();
+            compoundKey[] move = engine.bestMoveOnClock(model, clock, 0);
+            clock -= (System.nanoTime() - start) / 1_000_000;
+            assertTrue(model.legalSecondMove(move[0], move[1]));
+            model.makeMove(move[0], move[1]);
+            assertTrue(engine.lastOvershootMillis() < TimeManager.SAFETY_MILLIS);
+        }
+        assertTrue(clock > 0);
+        assertTrue(engine.worstOvershootMillis() < TimeManager.SAFETY_MILLIS);
+    }
+
+    /**
+     * This method tests the opening book: keys follow Polyglot's rules, book moves decode to the legal moves they
+     * stand for (castles included), and moves are picked by weight
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testOpeningBook() throws IOException {
+        Path empty = Files.createTempFile("book", ".bin");
+        OpeningBook keys = OpeningBook.open(empty);
+        assertEquals(0, keys.size());
+
+        // the keys the Polyglot specification publishes
+        Position start = Position.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1");
+        assertEquals(0x463b96181691fc9cL, keys.key(start));
+        // no black pawn can take en passant, so the square is not hashed
+        Position e4 = Position.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1");
+        assertEquals(0x823c9b50fd114196L, keys.key(e4));
+        assertEquals(0x0756b94461c50fb0L,
+                keys.key(Position.fromFen("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2")));
+        assertEquals(0x662fafb965db29d4L,
+                keys.key(Position.fromFen("rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2")));
+        // the white pawn on e5 can take en passant on f6
+        assertEquals(0x22a48b5a8e47ff78L,
+                keys.key(Position.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3")));
+        assertEquals(0x652a607ca3f242c1L,
+                keys.key(Position.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3")));
+        assertEquals(0x00fdd303c946bdd9L,
+                keys.key(Position.fromFen("rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4")));
+        assertEquals(0x3c8123ea7b067637L,
+                keys.key(Position.fromFen("rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3")));
+        assertEquals(0x5c3f9b829b279560L,
+                keys.key(Position.fromFen("rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4")));
+        Position castle = Position.fromFen("r3k2r/8/8/8/8/8/8/R3K2R w KQkq - 0 1");
+
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(start, list);
+        int e2e4 = find(list, "e2e4");
+        int d2d4 = find(list, "d2d4");
+        MoveGenerator.generateLegal(castle, list);
+        int shortCastle = find(list, "e1g1");
+        // a king taking its own rook, as Polyglot writes castles
+        assertEquals(7 | 0 << 3 | 4 << 6 | 0 << 9, OpeningBook.encodeMove(shortCastle));
+
+        long[][] entries = {
+                {keys.key(start), OpeningBook.encodeMove(e2e4), 3},
+                {keys.key(start), OpeningBook.encodeMove(d2d4), 1},
+                // e2e5 is not legal and must be skipped
+                {keys.key(start), 4 | 4 << 3 | 4 << 6 | 1 << 9, 100},
+                {keys.key(castle), OpeningBook.encodeMove(shortCastle), 1},
+                {keys.key(e4), OpeningBook.encodeMove(e2e4), 0},
+        };
+        Arrays.sort(entries, (a, b) -> Long.compareUnsigned(a[0], b[0]));
+        ByteBuffer buffer = ByteBuffer.allocate(entries.length * OpeningBook.ENTRY_BYTES);
+        for (long[] entry : entries)
+            buffer.putLong(entry[0]).putShort((short) entry[1]).putShort((short) entry[2]).putInt(0);
+        Path bookFile = Files.createTempFile("book", ".bin");
+        Files.write(bookFile, buffer.array());
+
+        OpeningBook book = OpeningBook.open(bookFile);
+        SplittableRandom random = new SplittableRandom(64);
+        assertEquals(entries.length, book.size());
+        assertEquals(2, book.moves(start).size());
+        assertEquals(shortCastle, book.pick(castle, random));
+        assertEquals(PackedMove.NONE, book.pick(e4, random));
+        assertEquals(PackedMove.NONE, book.pick(Position.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1"), random));
+        int kings = 0;
+        for (int i = 0; i < 4000; i++)
+            kings += book.pick(start, random) == e2e4 ? 1 : 0;
+        assertTrue(kings > 2700 && kings < 3300);
+
+        Engine engine = new Engine(1, 1);
+        engine.setBook(book);
+        ChessModel model = new ChessModel();
+        compoundKey[] move = engine.bestMove(model, 5000);
+        assertEquals(0, engine.lastResult().depth());
+        assertTrue(model.legalSecondMove(move[0], move[1]));
+        Files.delete(empty);
+        Files.delete(bookFile);
+    }
+
+    /**
+     * This method tests the endgame bitbase against the move generator: in sampled positions of every ending a won
+     * position has a move to one lost a ply sooner and none quicker, a lost one has only moves to positions won a ply
+     * sooner or quicker, a drawn one no move to a loss. The tables survive a write and open, and the search plays them
+     * without searching
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testBitbase() throws IOException {
+        Bitbase bitbase = Bitbase.generate();
+        Path file = Files.createTempFile("kxk", ".bb");
+        bitbase.write(file);
+        Bitbase mapped = Bitbase.open(file);
+
+        // mate in 1 both ways round, pawns that can't win, a pawn that queens with mate, a knight
+        assertEquals(Search.MATE - 1, mapped.probe(Position.fromFen("6k1/8/6K1/8/8/8/8/Q7 w - - 0 1")));
+        assertEquals(Search.MATE - 1, mapped.probe(Position.fromFen("q7/8/8/8/8/6k1/8/6K1 b - - 0 1")));
+        assertEquals(Search.DRAW, mapped.probe(Position.fromFen("4k3/8/8/8/8/8/4P3/4K3 b - - 0 1")));
+        assertEquals(Search.DRAW, mapped.probe(Position.fromFen("k7/p7/8/8/8/8/8/K7 w - - 0 1")));
+        assertEquals(Search.MATE - 1, mapped.probe(Position.fromFen("k7/2P5/1K6/8/8/8/8/8 w - - 0 1")));
+        assertEquals(Search.DRAW, mapped.probe(Position.fromFen("4k3/8/8/8/8/8/8/4K1N1 w - - 0 1")));
+        assertEquals(Bitbase.UNKNOWN, mapped.probe(Position.fromFen("4k3/8/8/8/8/8/4P3/4K2R w K - 0 1")));
+
+        SplittableRandom random = new SplittableRandom(3);
+        String[] pieces = {"Q", "R", "P"};
+        MoveList list = new MoveList();
+        for (String piece : pieces) {
+            int checked = 0;
+            String fen;
+            while (checked < 300) {
+                int[] squares = {random.nextInt(64), random.nextInt(64), random.nextInt(8, 56)};
+                char[][] board = new char[8][8];
+                for (char[] row : board)
+                    Arrays.fill(row, '1');
+                board[squares[0] / 8][squares[0] % 8] = 'K';
+                board[squares[1] / 8][squares[1] % 8] = 'k';
+                board[squares[2] / 8][squares[2] % 8] = piece.charAt(0);
+                if (squares[0] == squares[1] || squares[0] == squares[2] || squares[1] == squares[2])
+                    continue;
+                StringBuilder rows = new StringBuilder();
+                for (char[] row : board)
+                    rows.append(row).append('/');
+                fen = rows.substring(0, rows.length() - 1) + (random.nextBoolean() ? " w" : " b") + " - - 0 1";
+                Position position = Position.fromFen(fen);
+                int side = position.sideToMove();
+                if (position.inCheck(side ^ 1) || Math.abs(squares[0] % 8 - squares[1] % 8) <= 1
+                        && Math.abs(squares[0] / 8 - squares[1] / 8) <= 1)
+                    continue;
+                int score = mapped.probe(position);
+                assertEquals(score, bitbase.probe(position));
+                MoveGenerator.generateLegal(position, list);
+                int best = -Search.INFINITE;
+                for (int i = 0; i < list.size(); i++) {
+                    position.makeMove(list.get(i));
+                    int child = mapped.probe(position);
+                    // a promotion to a knight or bishop, or the piece taken
+                    if (child == Bitbase.UNKNOWN)
+                        child = Search.DRAW;
+                    position.unmakeMove();
+                    best = Math.max(best, -child);
+                }
+                if (list.size() == 0)
+                    best = position.inCheck(side) ? -Search.MATE : Search.DRAW;
+                // one ply further from the mate
+                int expected = best > Search.MATE_BOUND ? best - 1 : best < -Search.MATE_BOUND ? best + 1 : best;
+                assertEquals(expected, score, fen);
+                checked++;
+            }
+        }
+
+        Position rook = Position.fromFen("8/8/8/4k3/8/8/8/R3K3 w - - 0 1");
+        Search search = new Search(new Position(rook));
+        search.setBitbase(mapped);
+        Search.Result result = search.search(Search.MAX_PLY, 0);
+        assertEquals(mapped.probe(rook), result.score());
+        assertEquals(1, result.depth());
+        rook.makeMove(result.move());
+        // lost a ply sooner
+        assertEquals(-(result.score() + 1), mapped.probe(rook));
+        Files.delete(file);
+    }
+
+    /**
+     * This method tests the mate solver: the shortest mate is found and its line ends in mate, a position without a
+     * short mate is disproved, the node budget is kept, and on sampled rook endings the mate length agrees with the
+     * bitbase
+     */
+    @Test
+    public void testMateSolver() {
+        MateSolver solver = new MateSolver(1_000_000, 16);
+        MateSolver.Result result = solver.solve(Position.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 3);
+        assertEquals(MateSolver.MATE, result.status());
+        assertEquals(1, result.mateIn());
+        assertEquals("a1a8", PackedMove.toString(result.move()));
+
+        Position position = Position.fromFen("k7/8/2K5/8/8/8/8/7R w - - 0 1");
+        result = solver.solve(position, 3);
+        assertEquals(MateSolver.MATE, result.status());
+        assertEquals(2, result.mateIn());
+        assertEquals(3, result.line().length);
+        for (int move : result.line())
+            position.makeMove(move);
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(position, list);
+        assertEquals(0, list.size());
+        assertTrue(position.inCheck(position.sideToMove()));
+
+        assertEquals(MateSolver.NO_MATE, solver.solve(Position.fromFen("8/8/8/3k4/8/8/8/R3K3 w - - 0 1"), 3).status());
+        // stalemate is not mate
+        assertEquals(MateSolver.NO_MATE, solver.solve(Position.fromFen("k7/8/1QK5/8/8/8/8/8 b - - 0 1"), 2).status());
+        assertEquals(MateSolver.UNKNOWN, new MateSolver(50, 1).solve(Position.fromFen("8/8/8/3k4/8/8/8/R3K3 w - - 0 1"), 3)
+                .status());
+
+        Bitbase bitbase = Bitbase.generate();
+        SplittableRandom random = new SplittableRandom(24);
+        int checked = 0;
+        while (checked < 20) {
+            int white = random.nextInt(64);
+            int black = random.nextInt(64);
+            int rook = random.nextInt(64);
+            Position rookEnding = new Position();
+            if (white == black || white == rook || black == rook)
+                continue;
+            rookEnding.put(Position.piece(Position.WHITE, Position.KING), white);
+            rookEnding.put(Position.piece(Position.BLACK, Position.KING), black);
+            rookEnding.put(Position.piece(Position.WHITE, Position.ROOK), rook);
+            if ((Attacks.king(white) & Position.bit(black)) != 0 || rookEnding.inCheck(Position.BLACK))
+                continue;
+            int score = bitbase.probe(rookEnding);
+            int mateIn = score > Search.MATE_BOUND ? (Search.MATE - score + 1) / 2 : 0;
+            // the positions near a mate are rare, keep all of them and a few of the others
+            if (mateIn == 0 || mateIn > 3) {
+                if (random.nextInt(20) != 0)
+                    continue;
+                assertEquals(MateSolver.NO_MATE, solver.solve(rookEnding, 3).status());
+            } else {
+                result = solver.solve(rookEnding, 3);
+                assertEquals(MateSolver.MATE, result.status());
+                assertEquals(mateIn, result.mateIn());
+            }
+            checked++;
+        }
+    }
+
+    /**
+     * Test the Monte Carlo tree search: it finds a mate in one, plays out exactly the playouts allowed on several
+     * threads, and has no move in a mated position
+     */
+    @Test
+    public void testMonteCarloSearch() {
+        MonteCarloSearch search = new MonteCarloSearch(1);
+        MonteCarloSearch.Result result = search.search(Position.fromFen("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"), 0,
+                20_000);
+        assertEquals("a1a8", PackedMove.toString(result.move()));
+        assertEquals(20_000, result.playouts());
+        assertTrue(result.winRate() > 0.9);
+
+        String start = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+        MonteCarloSearch parallel = new MonteCarloSearch(3);
+        result = parallel.search(Position.fromFen(start), 0, 5_000);
+        assertEquals(5_000, result.playouts());
+        assertTrue(result.depth() > 1);
+        assertTrue(result.winRate() > 0 && result.winRate() < 1);
+        int move = parallel.search(Position.fromFen(start), 50, 0).move();
+        MoveList list = new MoveList();
+        MoveGenerator.generateLegal(Position.fromFen(start), list);
+        boolean legal = false;
+        for (int i = 0; i < list.size(); i++)
+            legal |= list.get(i) == move;
+        assertTrue(legal);
+        parallel.shutdown();
+
+        assertEquals(PackedMove.NONE, search.search(Position.fromFen("k7/1Q6/1K6/8/8/8/8/8 b - - 0 1"), 0, 100)
+                .move());
+    }
+}
@@ -5,6 +5,7 @@ import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 import javafx.geometry.Insets;
@@ -15,11 +16,14 @@ import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import model.ChessModel;
 import model.ChessMoveMessage;
+import model.Position;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -53,6 +57,10 @@ public class ChessGUIView extends Application implements Observer {
     private final Label timerLabelBlack = new Label();
     private final DoubleProperty timeBlack = new SimpleDoubleProperty();
     private final int timeControl = 180;
+    // the engine's thinking time per move outside competitive mode
+    private final long engineMillis = 1000;
+    private boolean enginePlaysBlack = false;
+    private boolean engineThinking = false;
     private Stage stage;
 
 
@@ -91,6 +99,7 @@ public class ChessGUIView extends Application implements Observer {
         this.stage = stage;
         stage.setScene(scene);
         stage.show();
+        loadEndgameBitbase();
     }
 
     /**
@@ -105,10 +114,71 @@ public class ChessGUIView extends Application implements Observer {
         MenuItem newGame = new MenuItem("Menu");
         newGame.setOnAction(actionEvent -> optionsMenu.showAndWait());
         menu.getItems().add(newGame);
-        menuBar.getMenus().add(menu);
+        menuBar.getMenus().addAll(menu, createEngineMenu());
         return menuBar;
     }
 
+    /**
+     * Create the Engine menu, to let the computer play a move or the black side,
+     * think during the opponent's turn in a network game, search by Monte Carlo tree
+     * search instead of alpha-beta, and load an opening book.
+     *
+     * @return engineMenu   the Menu with the engine's options
+     */
+    private Menu createEngineMenu() {
+        Menu engineMenu = new Menu("Engine");
+        MenuItem playMove = new MenuItem("Play Move");
+        playMove.setOnAction(actionEvent -> playEngineMove());
+        CheckMenuItem playBlack = new CheckMenuItem("Engine Plays Black");
+        playBlack.setOnAction(actionEvent -> {
+            enginePlaysBlack = playBlack.isSelected();
+            if (enginePlaysBlack && !controller.isWhiteTurn())
+                playEngineMove();
+        });
+        CheckMenuItem ponder = new CheckMenuItem("Ponder in Network Games");
+        ponder.setOnAction(actionEvent -> controller.setPondering(ponder.isSelected()));
+        MenuItem loadBook = new MenuItem("Load Opening Book");
+        loadBook.setOnAction(actionEvent -> loadOpeningBook());
+        CheckMenuItem monteCarlo = new CheckMenuItem("Monte Carlo Tree Search");
+        monteCarlo.setOnAction(actionEvent -> controller.setEngineMonteCarlo(monteCarlo.isSelected()));
+        engineMenu.getItems().addAll(playMove, playBlack, ponder, monteCarlo, loadBook);
+        return engineMenu;
+    }
+
+    /**
+     * Load the engine's endgame bitbase in the background, so the board shows at
+     * once even the first time, when the bitbase is generated.
+     */
+    private void loadEndgameBitbase() {
+        Thread t = new Thread(() -> {
+            try {
+                controller.loadBitbase();
+            } catch (IOException e) {
+                Platform.runLater(() -> popupEventAlert("Could not load the endgame bitbase: " + e.getMessage(),
+                        Alert.AlertType.ERROR));
+            }
+        }, "bitbase");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Ask for a Polyglot opening book and let the engine play its opening
+     * moves from it.
+     */
+    private void loadOpeningBook() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open Polyglot Book (.bin)");
+        File book = fileChooser.showOpenDialog(stage);
+        if (book == null)
+            return;
+        try {
+            controller.loadBook(book.toPath());
+        } catch (IOException e) {
+            popupEventAlert("Could not load the book: " + e.getMessage(), Alert.AlertType.ERROR);
+        }
+    }
+
     /**
      * This method will set the dimensions for the stage.
      *
@@ -365,7 +435,7 @@ public class ChessGUIView extends Application implements Observer {
      */
     private void addGridBoxEvent(VBox box, int i, int j) {
         box.setOnMouseClicked(mouseEvent -> {
-            if (!controller.isMyTurn())
+            if (!controller.isMyTurn() || engineThinking)
                 return;
             if (controller.networked()) {
                 if (!canClick) {
@@ -472,9 +542,41 @@ public class ChessGUIView extends Application implements Observer {
             firstClick = false;
             if (controller.networked())
                 canClick = true;
+            // in competitive mode the engine's turn starts its clock, so it answers right away
+            if (enginePlaysBlack && !controller.isWhiteTurn() && !moveInfo.isGameOver())
+                playEngineMove();
         }
     }
 
+    /**
+     * Let the computer play the move of the player whose turn it is. In competitive
+     * mode it thinks on what is left of that player's clock. The search runs on its
+     * own thread so the clocks keep ticking, on a copy of the position taken here,
+     * and the move is played on the main thread. Clicks on the board are ignored
+     * until then.
+     */
+    public void playEngineMove() {
+        if (engineThinking)
+            return;
+        boolean competitive = optionsMenu.isCompetitiveMode();
+        // the clock shows whole seconds, the next tick may be less than a second away
+        double seconds = (controller.isWhiteTurn() ? timeWhite.get() : timeBlack.get()) - 1;
+        Position position = controller.copyPosition();
+        engineThinking = true;
+        Thread t = new Thread(() -> {
+            compoundKey[] move = competitive ? controller.getEngineMoveOnClock(position, seconds)
+                    : controller.getEngineMove(position, engineMillis);
+            Platform.runLater(() -> {
+                engineThinking = false;
+                // a new game may have started while the engine was thinking
+                if (move != null && controller.getPositionKey() == position.key())
+                    controller.makeMove(move[0], move[1]);
+            });
+        }, "engine");
+        t.setDaemon(true);
+        t.start();
+    }
+
     private void gameOver(String message) {
         popupEventAlert(message, Alert.AlertType.CONFIRMATION);
         grid.getChildren().forEach(node -> node.setDisable(true));
@@ -490,9 +592,9 @@ public class ChessGUIView extends Application implements Observer {
     }
 
     /**
-     * An alert used to notify players of Checkmate, the game is over.
-     * @param message       a String containing "CHECKMATE"
-     * @param alertType     an alertType confirmation
+     * An alert used to notify players of Checkmate, the game is over, or of an error.
+     * @param message       a String containing "CHECKMATE" or the error
+     * @param alertType     an alertType confirmation or error
      */
     private void popupEventAlert(String message, Alert.AlertType alertType) {
         Alert alert = new Alert(alertType);